@@ -0,0 +1,49 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the JMH launcher does, with the gc profiler added so allocation rates
+ * are reported next to throughput, unless other profilers are asked for with -prof.
+ * <p>
+ * Usage: java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regexps]
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        Options options;
+        if (cmdOptions.getProfilers().isEmpty()) {
+            options = new OptionsBuilder().parent(cmdOptions).addProfiler(GCProfiler.class).build();
+        } else {
+            options = cmdOptions;
+        }
+        new Runner(options).run();
+    }
+
+}
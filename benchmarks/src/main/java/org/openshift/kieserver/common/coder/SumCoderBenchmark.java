@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.coder;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SumCoder against the implementation it replaced, which looked up a new MessageDigest
+ * and the charset by name on every call, then hex encoded through upper case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SumCoderBenchmark {
+
+    @Param({"MD5", "SHA-1", "SHA-256"})
+    public String algorithm;
+
+    private String containerConfig;
+    private SumCoder sumCoder;
+    private LegacySumCoder legacySumCoder;
+
+    @Setup
+    public void setup() {
+        containerConfig = "MyContainer=org.example:example-kjar:1.3.0-SNAPSHOT";
+        sumCoder = new SumCoder(algorithm);
+        legacySumCoder = new LegacySumCoder(algorithm, "UTF-8");
+        if (!sumCoder.encode(containerConfig).equals(legacySumCoder.encode(containerConfig))) {
+            throw new IllegalStateException("encodings differ for " + algorithm);
+        }
+    }
+
+    @Benchmark
+    public String sumCoder() {
+        return sumCoder.encode(containerConfig);
+    }
+
+    @Benchmark
+    public String legacySumCoder() {
+        return legacySumCoder.encode(containerConfig);
+    }
+
+    static final class LegacySumCoder {
+
+        private final String algorithm;
+        private final String charset;
+
+        LegacySumCoder(String algorithm, String charset) {
+            this.algorithm = algorithm;
+            this.charset = charset;
+        }
+
+        String encode(String s) {
+            try {
+                MessageDigest md = MessageDigest.getInstance(algorithm);
+                byte[] digest = md.digest(s.getBytes(charset));
+                // javax.xml.bind.DatatypeConverter.printHexBinary, inlined so it runs on any JDK
+                StringBuilder sb = new StringBuilder(digest.length * 2);
+                for (byte b : digest) {
+                    sb.append("0123456789ABCDEF".charAt((b >> 4) & 0xF));
+                    sb.append("0123456789ABCDEF".charAt(b & 0xF));
+                }
+                return sb.toString().toLowerCase();
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+    }
+
+}
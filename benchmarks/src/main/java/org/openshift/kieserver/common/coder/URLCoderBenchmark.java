@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.coder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * URLCoder on a container config, with and without the characters it has to escape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class URLCoderBenchmark {
+
+    @Param({"MyContainer", "MyContainer=org.example:example-kjar:1.3.0-SNAPSHOT", "My Container=org.example:example kjar:1.3.0"})
+    public String value;
+
+    private URLCoder urlCoder;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        urlCoder = new URLCoder();
+        encoded = urlCoder.encode(value);
+    }
+
+    @Benchmark
+    public String encode() {
+        return urlCoder.encode(value);
+    }
+
+    @Benchmark
+    public String decode() {
+        return urlCoder.decode(encoded);
+    }
+
+}
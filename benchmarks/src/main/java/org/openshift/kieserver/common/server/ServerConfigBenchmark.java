@@ -0,0 +1,82 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_ALIAS;
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_CONFIG;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The ServerConfig lookups every redirected request or message makes, with both hits and misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerConfigBenchmark {
+
+    private ServerConfig serverConfig;
+    private String deploymentId;
+    private String unknownId;
+
+    @Setup
+    public void setup() {
+        serverConfig = StandIns.redirectEnabledServerConfig();
+        deploymentId = serverConfig.getDeploymentIdForContainerConfig(CONTAINER_CONFIG);
+        unknownId = "Unknown";
+    }
+
+    @Benchmark
+    public void hasDeploymentId(Blackhole bh) {
+        bh.consume(serverConfig.hasDeploymentId(deploymentId));
+        bh.consume(serverConfig.hasDeploymentId(CONTAINER_ALIAS));
+        bh.consume(serverConfig.hasDeploymentId(null));
+    }
+
+    @Benchmark
+    public void getDeploymentIdForContainerConfig(Blackhole bh) {
+        bh.consume(serverConfig.getDeploymentIdForContainerConfig(CONTAINER_CONFIG));
+        bh.consume(serverConfig.getDeploymentIdForContainerConfig(unknownId));
+    }
+
+    @Benchmark
+    public void getDefaultDeploymentIdForAlias(Blackhole bh) {
+        bh.consume(serverConfig.getDefaultDeploymentIdForAlias(CONTAINER_ALIAS));
+        bh.consume(serverConfig.getDefaultDeploymentIdForAlias(unknownId));
+    }
+
+    @Benchmark
+    public void getForDeploymentId(Blackhole bh) {
+        bh.consume(serverConfig.getContainerAliasForDeploymentId(deploymentId));
+        bh.consume(serverConfig.getContainerConfigForDeploymentId(deploymentId));
+    }
+
+}
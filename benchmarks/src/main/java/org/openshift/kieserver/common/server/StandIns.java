@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jbpm.services.api.RuntimeDataService;
+import org.jbpm.services.api.model.ProcessInstanceDesc;
+import org.jbpm.services.api.model.UserTaskInstanceDesc;
+import org.kie.api.executor.ExecutorService;
+import org.kie.server.services.api.KieServerRegistry;
+
+/**
+ * In-memory stand-ins for the services the redirect layers get from a running KIE Server,
+ * so the harnesses need no app server or database.
+ */
+public final class StandIns {
+
+    public static final String CONTAINER_ALIAS = "MyContainer";
+    public static final String CONTAINER_CONFIG = CONTAINER_ALIAS + "=org.openshift.kieserver:my-kjar:1.0.0";
+    public static final String CONTAINER_DEPLOYMENT = CONTAINER_CONFIG
+            + "|" + CONTAINER_ALIAS + "=org.openshift.kieserver:my-kjar:1.1.0"
+            + "|Other=org.openshift.kieserver:other-kjar:2.0.0";
+
+    private StandIns() {}
+
+    /**
+     * Publishes a redirect enabled snapshot of {@link #CONTAINER_DEPLOYMENT}, whatever the environment says.
+     */
+    public static ServerConfig redirectEnabledServerConfig() {
+        ServerConfig serverConfig = new ServerConfig(null, null, null, CONTAINER_DEPLOYMENT, "true");
+        ServerConfig.setInstance(serverConfig);
+        return serverConfig;
+    }
+
+    /**
+     * A helper resolving every process instance, task, work item and correlation key to the deployment id.
+     */
+    public static DeploymentHelper deploymentHelper(String deploymentId) {
+        return new DeploymentHelper(runtimeDataService(deploymentId), standIn(ExecutorService.class, new Answers()));
+    }
+
+    public static RuntimeDataService runtimeDataService(final String deploymentId) {
+        final ProcessInstanceDesc pDesc = standIn(ProcessInstanceDesc.class, new Answers() {
+            @Override
+            protected Object answer(String method, Object[] args) {
+                return "getDeploymentId".equals(method) ? deploymentId : null;
+            }
+        });
+        final UserTaskInstanceDesc tDesc = standIn(UserTaskInstanceDesc.class, new Answers() {
+            @Override
+            protected Object answer(String method, Object[] args) {
+                return "getDeploymentId".equals(method) ? deploymentId : null;
+            }
+        });
+        return standIn(RuntimeDataService.class, new Answers() {
+            @Override
+            protected Object answer(String method, Object[] args) {
+                if ("getProcessInstanceById".equals(method) || "getProcessInstanceByCorrelationKey".equals(method)) {
+                    return pDesc;
+                } else if ("getTaskById".equals(method) || "getTaskByWorkItemId".equals(method)) {
+                    return tDesc;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A registry without extensions or containers, so marshallers are never container specific.
+     */
+    public static KieServerRegistry kieServerRegistry() {
+        return standIn(KieServerRegistry.class, new Answers() {
+            @Override
+            protected Object answer(String method, Object[] args) {
+                return "getServerExtensions".equals(method) ? Collections.emptyList() : null;
+            }
+        });
+    }
+
+    public static <T> T standIn(Class<T> type, Answers answers) {
+        return type.cast(Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, answers));
+    }
+
+    /**
+     * Answers by method name; anything not answered returns null, false or zero.
+     */
+    public static class Answers implements InvocationHandler {
+
+        private static final Map<Class<?>, Object> PRIMITIVE_DEFAULTS = new HashMap<Class<?>, Object>();
+        static {
+            PRIMITIVE_DEFAULTS.put(boolean.class, Boolean.FALSE);
+            PRIMITIVE_DEFAULTS.put(byte.class, Byte.valueOf((byte)0));
+            PRIMITIVE_DEFAULTS.put(char.class, Character.valueOf((char)0));
+            PRIMITIVE_DEFAULTS.put(short.class, Short.valueOf((short)0));
+            PRIMITIVE_DEFAULTS.put(int.class, Integer.valueOf(0));
+            PRIMITIVE_DEFAULTS.put(long.class, Long.valueOf(0));
+            PRIMITIVE_DEFAULTS.put(float.class, Float.valueOf(0));
+            PRIMITIVE_DEFAULTS.put(double.class, Double.valueOf(0));
+        }
+
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                if ("equals".equals(name)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(name)) {
+                    return System.identityHashCode(proxy);
+                }
+                return "StandIn@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+            Object answer = answer(name, args != null ? args : new Object[0]);
+            Class<?> type = method.getReturnType();
+            if (answer == null && type.isPrimitive() && type != void.class) {
+                return PRIMITIVE_DEFAULTS.get(type);
+            }
+            return answer;
+        }
+
+        protected Object answer(String method, Object[] args) throws Exception {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import static org.kie.server.api.jms.JMSConstants.CONTAINER_ID_PROPERTY_NAME;
+import static org.kie.server.api.jms.JMSConstants.SERIALIZATION_FORMAT_PROPERTY_NAME;
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_ALIAS;
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_CONFIG;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.interceptor.InvocationContext;
+import javax.jms.MessageListener;
+import javax.jms.TextMessage;
+
+import org.kie.server.api.commands.CommandScript;
+import org.kie.server.api.commands.DescriptorCommand;
+import org.kie.server.api.marshalling.MarshallerFactory;
+import org.kie.server.api.marshalling.MarshallingFormat;
+import org.kie.server.api.model.KieServerCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openshift.kieserver.common.server.ServerConfig;
+import org.openshift.kieserver.common.server.StandIns;
+import org.openshift.kieserver.common.server.StandIns.Answers;
+
+/**
+ * One message through the redirect interceptor, in each marshalling format, for:
+ * <ul>
+ * <li>processInstance: a command on a process instance of a container alias, redirected by the instance</li>
+ * <li>alias: a command on a container alias, redirected to its default deployment</li>
+ * <li>deployment: a command on an actual deployment id, which only gets its properties filtered</li>
+ * </ul>
+ * The payloads are marshalled by the KIE Server marshallers, and every invocation gets a new message,
+ * since the interceptor rewrites it in place; building it is part of the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectInterceptorBenchmark {
+
+    @Param({"JSON", "JAXB", "XSTREAM"})
+    public MarshallingFormat format;
+
+    @Param({"processInstance", "alias", "deployment"})
+    public String scenario;
+
+    private RedirectInterceptor redirectInterceptor;
+    private Method onMessage;
+    private String text;
+    private Map<String, Object> properties;
+
+    @Setup
+    public void setup() throws Exception {
+        ServerConfig serverConfig = StandIns.redirectEnabledServerConfig();
+        String deploymentId = serverConfig.getDeploymentIdForContainerConfig(CONTAINER_CONFIG);
+        redirectInterceptor = new RedirectInterceptor(StandIns.deploymentHelper(deploymentId), StandIns.kieServerRegistry());
+        onMessage = MessageListener.class.getMethod("onMessage", javax.jms.Message.class);
+        DescriptorCommand command;
+        if ("processInstance".equals(scenario)) {
+            command = new DescriptorCommand("ProcessService", "getProcessInstance", CONTAINER_ALIAS, Long.valueOf(42), Boolean.FALSE, format.getType());
+        } else if ("alias".equals(scenario)) {
+            command = new DescriptorCommand("ProcessService", "startProcess", CONTAINER_ALIAS, "MyProcess", format.getType());
+        } else if ("deployment".equals(scenario)) {
+            command = new DescriptorCommand("ProcessService", "startProcess", deploymentId, "MyProcess", format.getType());
+        } else {
+            throw new IllegalArgumentException(scenario);
+        }
+        List<KieServerCommand> commands = Collections.<KieServerCommand>singletonList(command);
+        text = MarshallerFactory.getMarshaller(format, CommandScript.class.getClassLoader()).marshall(new CommandScript(commands));
+        properties = new HashMap<String, Object>();
+        properties.put(SERIALIZATION_FORMAT_PROPERTY_NAME, Integer.valueOf(format.getId()));
+        if ("deployment".equals(scenario)) {
+            properties.put(CONTAINER_ID_PROPERTY_NAME, deploymentId);
+        }
+    }
+
+    @Benchmark
+    public Object doIntercept() throws Exception {
+        TextMessage message = textMessage(text, properties);
+        return redirectInterceptor.doIntercept(invocationContext(onMessage, message));
+    }
+
+    private static TextMessage textMessage(final String text, final Map<String, Object> properties) {
+        return StandIns.standIn(TextMessage.class, new Answers() {
+            private String body = text;
+            private final Map<String, Object> props = new HashMap<String, Object>(properties);
+            @Override
+            protected Object answer(String method, Object[] args) {
+                if ("getJMSCorrelationID".equals(method)) {
+                    return "ID:benchmark";
+                } else if ("getText".equals(method)) {
+                    return body;
+                } else if ("setText".equals(method)) {
+                    body = (String)args[0];
+                } else if ("clearBody".equals(method)) {
+                    body = null;
+                } else if ("propertyExists".equals(method)) {
+                    return props.containsKey(args[0]);
+                } else if ("getObjectProperty".equals(method) || "getStringProperty".equals(method) || "getIntProperty".equals(method)) {
+                    return props.get(args[0]);
+                } else if ("setObjectProperty".equals(method) || "setStringProperty".equals(method)) {
+                    props.put((String)args[0], args[1]);
+                } else if ("getPropertyNames".equals(method)) {
+                    return Collections.enumeration(props.keySet());
+                } else if ("clearProperties".equals(method)) {
+                    props.clear();
+                }
+                return null;
+            }
+        });
+    }
+
+    private static InvocationContext invocationContext(final Method method, final TextMessage message) {
+        return StandIns.standIn(InvocationContext.class, new Answers() {
+            @Override
+            protected Object answer(String name, Object[] args) {
+                if ("getMethod".equals(name)) {
+                    return method;
+                } else if ("getParameters".equals(name)) {
+                    return new Object[]{message};
+                }
+                // proceed
+                return null;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching a path against the KIE Server REST resources, by scanning all the patterns in order
+ * as well as through the matcher the filter uses, and pulling out the path variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathPatternBenchmark {
+
+    @Param({
+        "/server/containers/MyContainer",
+        "/server/containers/MyContainer/processes/instances/42/variables",
+        "/server/containers/MyContainer/tasks/7/states/started",
+        "/server/jobs/3",
+        "/server/unknown/path"})
+    public String pathInfo;
+
+    private List<PathPattern> pathPatterns;
+    private PathPatternMatcher pathPatternMatcher;
+    private PathPattern pathPattern;
+    private HttpServletRequest request;
+
+    @Setup
+    public void setup() {
+        pathPatterns = PathPattern.buildPathPatterns();
+        pathPatternMatcher = new PathPatternMatcher(pathPatterns);
+        pathPattern = pathPatternMatcher.getPathPattern(pathInfo);
+        request = ServletStandIns.request(pathInfo, ServletStandIns.parameters());
+    }
+
+    @Benchmark
+    public PathPattern scanMatches() {
+        for (PathPattern pp : pathPatterns) {
+            if (pp.matches(pathInfo)) {
+                return pp;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public PathMatch matcherMatch() {
+        return pathPatternMatcher.match(request);
+    }
+
+    @Benchmark
+    public Object getVariables() {
+        // nothing to extract from the unmatched path
+        return pathPattern != null ? pathPattern.getVariables(request) : null;
+    }
+
+}
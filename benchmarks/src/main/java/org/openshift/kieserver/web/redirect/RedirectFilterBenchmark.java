@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_ALIAS;
+import static org.openshift.kieserver.common.server.StandIns.CONTAINER_CONFIG;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openshift.kieserver.common.server.DeploymentHelper;
+import org.openshift.kieserver.common.server.ServerConfig;
+import org.openshift.kieserver.common.server.StandIns;
+
+/**
+ * One request through the redirect filter, for:
+ * <ul>
+ * <li>alias: a container alias, redirected by its process instance</li>
+ * <li>instanceIds: a container alias, redirected by the instanceId query parameters</li>
+ * <li>deployment: an actual deployment id, passed down the chain</li>
+ * <li>unmatched: a path no KIE Server resource has, passed down the chain</li>
+ * </ul>
+ * The instance lookups are answered by the shared deployment cache once warmed up, as they would be in a server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedirectFilterBenchmark {
+
+    @Param({"alias", "instanceIds", "deployment", "unmatched"})
+    public String scenario;
+
+    private RedirectFilter redirectFilter;
+    private PathPatternMatcher pathPatternMatcher;
+    private DeploymentHelper deploymentHelper;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ServletStandIns.CountingFilterChain chain;
+
+    @Setup
+    public void setup() throws ServletException {
+        ServerConfig serverConfig = StandIns.redirectEnabledServerConfig();
+        String deploymentId = serverConfig.getDeploymentIdForContainerConfig(CONTAINER_CONFIG);
+        deploymentHelper = StandIns.deploymentHelper(deploymentId);
+        pathPatternMatcher = new PathPatternMatcher(PathPattern.buildPathPatterns());
+        redirectFilter = new RedirectFilter(deploymentHelper);
+        redirectFilter.init(null);
+        if ("alias".equals(scenario)) {
+            request = ServletStandIns.request("/server/containers/" + CONTAINER_ALIAS + "/processes/instances/42", ServletStandIns.parameters());
+        } else if ("instanceIds".equals(scenario)) {
+            request = ServletStandIns.request("/server/containers/" + CONTAINER_ALIAS + "/processes/instances",
+                    ServletStandIns.parameters(RedirectStrategy.INSTANCE_ID_PARAM, "41", RedirectStrategy.INSTANCE_ID_PARAM, "42"));
+        } else if ("deployment".equals(scenario)) {
+            request = ServletStandIns.request("/server/containers/" + deploymentId + "/processes/instances/42", ServletStandIns.parameters());
+        } else if ("unmatched".equals(scenario)) {
+            request = ServletStandIns.request("/server/unknown/path", ServletStandIns.parameters());
+        } else {
+            throw new IllegalArgumentException(scenario);
+        }
+        response = ServletStandIns.response();
+        chain = new ServletStandIns.CountingFilterChain();
+    }
+
+    @TearDown
+    public void tearDown() {
+        redirectFilter.destroy();
+    }
+
+    @Benchmark
+    public RedirectData servletRedirectData() {
+        return new ServletRedirectData(request, response, pathPatternMatcher, deploymentHelper);
+    }
+
+    @Benchmark
+    public long doFilter() throws Exception {
+        redirectFilter.doFilter(request, response, chain);
+        return chain.getCount();
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.openshift.kieserver.common.server.StandIns;
+import org.openshift.kieserver.common.server.StandIns.Answers;
+
+/**
+ * Servlet stand-ins holding just what the redirect filter reads.
+ */
+final class ServletStandIns {
+
+    static final String SERVLET_PATH = "/services/rest";
+
+    private ServletStandIns() {}
+
+    static HttpServletRequest request(final String pathInfo, final Map<String, String[]> parameters) {
+        final StringBuilder queryString = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            for (String value : parameter.getValue()) {
+                if (queryString.length() > 0) {
+                    queryString.append('&');
+                }
+                queryString.append(parameter.getKey()).append('=').append(value);
+            }
+        }
+        final RequestDispatcher dispatcher = StandIns.standIn(RequestDispatcher.class, new Answers());
+        return StandIns.standIn(HttpServletRequest.class, new Answers() {
+            @Override
+            protected Object answer(String method, Object[] args) {
+                if ("getMethod".equals(method)) {
+                    return "GET";
+                } else if ("getServletPath".equals(method)) {
+                    return SERVLET_PATH;
+                } else if ("getPathInfo".equals(method)) {
+                    return pathInfo;
+                } else if ("getQueryString".equals(method)) {
+                    return queryString.length() > 0 ? queryString.toString() : null;
+                } else if ("getParameter".equals(method)) {
+                    String[] values = parameters.get(args[0]);
+                    return values != null && values.length > 0 ? values[0] : null;
+                } else if ("getParameterValues".equals(method)) {
+                    return parameters.get(args[0]);
+                } else if ("getParameterMap".equals(method)) {
+                    return parameters;
+                } else if ("getParameterNames".equals(method)) {
+                    return Collections.enumeration(parameters.keySet());
+                } else if ("getHeaderNames".equals(method) || "getHeaders".equals(method)) {
+                    return Collections.enumeration(Collections.<String>emptyList());
+                } else if ("getRequestDispatcher".equals(method)) {
+                    return dispatcher;
+                }
+                return null;
+            }
+        });
+    }
+
+    // repeated names give multiple values
+    static Map<String, String[]> parameters(String... namesAndValues) {
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        for (int i=0; i < namesAndValues.length; i+=2) {
+            String[] values = parameters.get(namesAndValues[i]);
+            values = values != null ? Arrays.copyOf(values, values.length + 1) : new String[1];
+            values[values.length - 1] = namesAndValues[i + 1];
+            parameters.put(namesAndValues[i], values);
+        }
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    static HttpServletResponse response() {
+        return StandIns.standIn(HttpServletResponse.class, new Answers());
+    }
+
+    /**
+     * Counts the requests which made it through the filter without being forwarded.
+     */
+    static final class CountingFilterChain implements FilterChain {
+
+        private long count = 0;
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) {
+            count++;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+    }
+
+}
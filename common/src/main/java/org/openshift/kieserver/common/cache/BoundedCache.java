@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.cache;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Size bounded cache with clock (second chance) eviction. Lookups are lock free and only mark the
+ * entry as referenced; adds are serialized, and evict the oldest entry not referenced since the
+ * clock hand last passed it, so entries that keep getting hit stay cached.
+ */
+public final class BoundedCache<K,V> {
+
+    private final int maxSize;
+    private final ConcurrentMap<K,Entry<V>> entries;
+    // guarded by this
+    private final Queue<K> clock = new ArrayDeque<K>();
+
+    public BoundedCache(int maxSize) {
+        this.maxSize = Math.max(maxSize, 0);
+        this.entries = new ConcurrentHashMap<K,Entry<V>>();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the value already cached for the key, or caches and returns the given one.
+     */
+    public V putIfAbsent(K key, V value) {
+        if (maxSize == 0) {
+            return value;
+        }
+        synchronized (this) {
+            Entry<V> existing = entries.get(key);
+            if (existing != null) {
+                return existing.value;
+            }
+            while (entries.size() >= maxSize) {
+                evict();
+            }
+            entries.put(key, new Entry<V>(value));
+            clock.add(key);
+            return value;
+        }
+    }
+
+    /**
+     * Caches the value for the key, replacing any value already cached.
+     */
+    public void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.replace(key, new Entry<V>(value)) != null) {
+                return;
+            }
+            while (entries.size() >= maxSize) {
+                evict();
+            }
+            entries.put(key, new Entry<V>(value));
+            clock.add(key);
+        }
+    }
+
+    // guarded by this; every key in the clock has an entry, so at most two turns
+    private void evict() {
+        K key;
+        while ((key = clock.poll()) != null) {
+            Entry<V> entry = entries.get(key);
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.add(key);
+            } else {
+                entries.remove(key);
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private volatile boolean referenced;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+
+    }
+
+}
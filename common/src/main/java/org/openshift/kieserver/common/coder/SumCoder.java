@@ -16,16 +16,25 @@
 package org.openshift.kieserver.common.coder;
 
 import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import javax.xml.bind.DatatypeConverter;
-
+/**
+ * Hex encoded message digest. Digest instances are reused per thread and algorithm (shared by
+ * all coders), and the hex is written straight into a char array, so an encode only allocates
+ * the bytes of the string, the digest and the result.
+ */
 public class SumCoder implements Coder {
 
-    private final String charset;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ConcurrentMap<String,ThreadLocal<MessageDigest>> DIGESTS = new ConcurrentHashMap<String,ThreadLocal<MessageDigest>>();
+
+    private final Charset charset;
     private final String algorithm;
+    private final ThreadLocal<MessageDigest> digest;
 
     public SumCoder(String algorithm) {
         this(algorithm, "UTF-8");
@@ -33,20 +42,16 @@ public class SumCoder implements Coder {
 
     public SumCoder(String algorithm, String charset) {
         this.algorithm = algorithm;
-        this.charset = charset;
+        this.charset = Charset.forName(charset);
+        this.digest = getDigest(algorithm);
     }
 
     @Override
     public String encode(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance(algorithm);
-            byte[] digest = md.digest(s.getBytes(charset));
-            return DatatypeConverter.printHexBinary(digest).toLowerCase();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
-        }
+        MessageDigest md = digest.get();
+        // digest() also resets, but not if an earlier update failed halfway
+        md.reset();
+        return toHex(md.digest(s.getBytes(charset)));
     }
 
     @Override
@@ -54,6 +59,37 @@ public class SumCoder implements Coder {
         throw new UnsupportedOperationException(algorithm + " decode unsupported");
     }
 
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i=0, j=0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[j++] = HEX[b >>> 4];
+            chars[j++] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private static ThreadLocal<MessageDigest> getDigest(final String algorithm) {
+        ThreadLocal<MessageDigest> digest = DIGESTS.get(algorithm);
+        if (digest == null) {
+            digest = new ThreadLocal<MessageDigest>() {
+                @Override
+                protected MessageDigest initialValue() {
+                    try {
+                        return MessageDigest.getInstance(algorithm);
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            ThreadLocal<MessageDigest> existing = DIGESTS.putIfAbsent(algorithm, digest);
+            if (existing != null) {
+                digest = existing;
+            }
+        }
+        return digest;
+    }
+
     public static void main(String[] args) {
         boolean valid = main(args, System.out, System.err);
         if (!valid) {
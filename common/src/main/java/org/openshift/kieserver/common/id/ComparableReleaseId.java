@@ -19,22 +19,38 @@ import org.apache.maven.artifact.versioning.ArtifactVersion;
 import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
 import org.kie.api.KieServices;
 import org.kie.api.builder.ReleaseId;
+import org.openshift.kieserver.common.cache.BoundedCache;
 
+/**
+ * Release id ordered by the maven version of its external form, which is parsed once up front
+ * so that sorting does not parse on every comparison. Use {@link #valueOf(String)} to share one
+ * instance per gav.
+ */
 public class ComparableReleaseId implements ReleaseId, Comparable<ReleaseId> {
 
+    static final int INTERNED_CACHE_SIZE = 1024;
+
+    // the same few gavs get parsed again on every config load, redirect and verification
+    private static final BoundedCache<String,ComparableReleaseId> INTERNED = new BoundedCache<String,ComparableReleaseId>(INTERNED_CACHE_SIZE);
+
     private final ReleaseId releaseId;
+    private final ArtifactVersion artifactVersion;
 
     public ComparableReleaseId(String releaseId) {
-        String[] gav = releaseId.split(":");
-        this.releaseId = KieServices.Factory.get().newReleaseId(gav[0], gav[1], gav[2]);
+        this(newReleaseId(releaseId.split(":")));
     }
 
     public ComparableReleaseId(String groupId, String artifactId, String version) {
-        this.releaseId = KieServices.Factory.get().newReleaseId(groupId, artifactId, version);
+        this(KieServices.Factory.get().newReleaseId(groupId, artifactId, version));
     }
 
     public ComparableReleaseId(ReleaseId releaseId) {
         this.releaseId = releaseId;
+        this.artifactVersion = releaseId != null ? new DefaultArtifactVersion(releaseId.toExternalForm()) : null;
+    }
+
+    private static ReleaseId newReleaseId(String[] gav) {
+        return KieServices.Factory.get().newReleaseId(gav[0], gav[1], gav[2]);
     }
 
     @Override
@@ -72,9 +88,13 @@ public class ComparableReleaseId implements ReleaseId, Comparable<ReleaseId> {
         if (this == that) {
             return 0;
         }
-        ArtifactVersion thisVersion = new DefaultArtifactVersion(releaseId.toExternalForm());
-        ArtifactVersion thatVersion = new DefaultArtifactVersion(that.toExternalForm());
-        return thisVersion.compareTo(thatVersion);
+        ArtifactVersion thatVersion;
+        if (that instanceof ComparableReleaseId) {
+            thatVersion = ((ComparableReleaseId)that).artifactVersion;
+        } else {
+            thatVersion = new DefaultArtifactVersion(that.toExternalForm());
+        }
+        return artifactVersion.compareTo(thatVersion);
     }
 
     @Override
@@ -107,6 +127,26 @@ public class ComparableReleaseId implements ReleaseId, Comparable<ReleaseId> {
         return result;
     }
 
+    /**
+     * Returns the shared instance for the gav, parsing it only if it is not already known.
+     */
+    public static ComparableReleaseId valueOf(String gav) {
+        ComparableReleaseId releaseId = INTERNED.get(gav);
+        if (releaseId == null) {
+            releaseId = INTERNED.putIfAbsent(gav, new ComparableReleaseId(gav));
+        }
+        return releaseId;
+    }
+
+    public static ComparableReleaseId valueOf(String groupId, String artifactId, String version) {
+        return valueOf(groupId + ":" + artifactId + ":" + version);
+    }
+
+    // package-protected for JUnit testing
+    static int getInternedCount() {
+        return INTERNED.size();
+    }
+
     public static ComparableReleaseId toComparable(ReleaseId releaseId) {
         if (releaseId instanceof ComparableReleaseId) {
             return (ComparableReleaseId)releaseId;
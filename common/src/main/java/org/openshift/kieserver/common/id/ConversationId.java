@@ -15,14 +15,18 @@
  */
 package org.openshift.kieserver.common.id;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import org.kie.server.api.KieServerConstants;
 import org.kie.server.api.KieServerEnvironment;
 import org.kie.server.api.Version;
 import org.kie.server.api.model.ReleaseId;
+import org.openshift.kieserver.common.cache.BoundedCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,29 +38,39 @@ public final class ConversationId {
     // org.kie.server.api.KieServerConstants.KIE_CONVERSATION_ID_TYPE_HEADER exists in 6.4+
     public static final String KIE_CONVERSATION_ID_TYPE_HEADER;
 
-    private static final Method FROM;
-    private static final Method FROM_STRING;
-    private static final Method GET_CONTAINER_ID;
+    // bound to Object in and out, so they can be called with invokeExact and inlined like direct calls
+    private static final MethodHandle FROM;
+    private static final MethodHandle FROM_STRING;
+    private static final MethodHandle GET_CONTAINER_ID;
+
+    static final int CONTAINER_ID_CACHE_SIZE = 1024;
+
+    // clients keep sending the same conversation id, and the container id is part of it
+    private static final BoundedCache<String,String> CONTAINER_IDS = new BoundedCache<String,String>(CONTAINER_ID_CACHE_SIZE);
 
     static {
         String kieConversationIdTypeHeader = null;
-        Method from = null;
-        Method fromString = null;
-        Method getContainerId = null;
+        MethodHandle from = null;
+        MethodHandle fromString = null;
+        MethodHandle getContainerId = null;
         if (isSupported()) {
             try {
                 Field field = KieServerConstants.class.getDeclaredField("KIE_CONVERSATION_ID_TYPE_HEADER");
                 field.setAccessible(true);
                 kieConversationIdTypeHeader = (String)field.get(null);
                 Class<?> clazz = Class.forName("org.kie.server.api.ConversationId");
-                from = clazz.getDeclaredMethod("from", String.class, String.class, ReleaseId.class);
-                from.setAccessible(true);
-                fromString = clazz.getDeclaredMethod("fromString", String.class);
-                fromString.setAccessible(true);
-                getContainerId = clazz.getDeclaredMethod("getContainerId");
-                getContainerId.setAccessible(true);
+                Lookup lookup = MethodHandles.lookup();
+                from = lookup.unreflect(getDeclaredMethod(clazz, "from", String.class, String.class, ReleaseId.class))
+                        .asType(MethodType.methodType(Object.class, String.class, String.class, ReleaseId.class));
+                fromString = lookup.unreflect(getDeclaredMethod(clazz, "fromString", String.class))
+                        .asType(MethodType.methodType(Object.class, String.class));
+                getContainerId = lookup.unreflect(getDeclaredMethod(clazz, "getContainerId"))
+                        .asType(MethodType.methodType(String.class, Object.class));
             } catch (Throwable t) {
                 LOGGER.warn(t.getMessage());
+                from = null;
+                fromString = null;
+                getContainerId = null;
             }
         }
         if (kieConversationIdTypeHeader == null) {
@@ -68,6 +82,12 @@ public final class ConversationId {
         GET_CONTAINER_ID = getContainerId;
     }
 
+    private static Method getDeclaredMethod(Class<?> clazz, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        Method method = clazz.getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return method;
+    }
+
     public static boolean isSupported() {
         Version version = KieServerEnvironment.getVersion();
         return version.getMajor() >= 6 && version.getMinor() >= 4;
@@ -82,11 +102,9 @@ public final class ConversationId {
     public String getContainerId() {
         if (GET_CONTAINER_ID != null) {
             try {
-                return (String)GET_CONTAINER_ID.invoke(conversationId);
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+                return (String)GET_CONTAINER_ID.invokeExact(conversationId);
+            } catch (Throwable t) {
+                throw propagate(t);
             }
         }
         return null;
@@ -95,12 +113,10 @@ public final class ConversationId {
     public static ConversationId from(String kieServerId, String containerId, ReleaseId releaseId) {
         if (FROM != null) {
             try {
-                Object conversationId = FROM.invoke(null, kieServerId, containerId, releaseId);
+                Object conversationId = (Object)FROM.invokeExact(kieServerId, containerId, releaseId);
                 return conversationId != null ? new ConversationId(conversationId) : null;
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+            } catch (Throwable t) {
+                throw propagate(t);
             }
         }
         return null;
@@ -109,17 +125,47 @@ public final class ConversationId {
     public static ConversationId fromString(String conversationIdString) {
         if (FROM_STRING != null) {
             try {
-                Object conversationId = FROM_STRING.invoke(null, conversationIdString);
+                Object conversationId = (Object)FROM_STRING.invokeExact(conversationIdString);
                 return conversationId != null ? new ConversationId(conversationId) : null;
-            } catch (InvocationTargetException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
+            } catch (Throwable t) {
+                throw propagate(t);
             }
         }
         return null;
     }
 
+    /**
+     * The container id of the conversation id string, parsed once per distinct string.
+     */
+    public static String getContainerId(String conversationIdString) {
+        if (conversationIdString == null || FROM_STRING == null) {
+            return null;
+        }
+        String containerId = CONTAINER_IDS.get(conversationIdString);
+        if (containerId == null) {
+            ConversationId conversationId = fromString(conversationIdString);
+            containerId = conversationId != null ? conversationId.getContainerId() : null;
+            if (containerId != null) {
+                CONTAINER_IDS.putIfAbsent(conversationIdString, containerId);
+            }
+        }
+        return containerId;
+    }
+
+    // package-protected for JUnit testing
+    static int getCachedContainerIdCount() {
+        return CONTAINER_IDS.size();
+    }
+
+    private static RuntimeException propagate(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException)t;
+        } else if (t instanceof Error) {
+            throw (Error)t;
+        }
+        return new RuntimeException(t);
+    }
+
     public String toString() {
         return conversationId != null ? conversationId.toString() : null;
     }
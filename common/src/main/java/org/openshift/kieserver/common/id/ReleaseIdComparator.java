@@ -75,7 +75,7 @@ public class ReleaseIdComparator implements Comparator<ReleaseId> {
                 if (gav != null) {
                     gav = gav.trim();
                     if (gav.length() > 0) {
-                        releaseIds.add(new ComparableReleaseId(gav));
+                        releaseIds.add(ComparableReleaseId.valueOf(gav));
                     }
                 }
             }
@@ -89,12 +89,38 @@ public class ReleaseIdComparator implements Comparator<ReleaseId> {
 
     private static ReleaseId getFirstSorted(List<ReleaseId> releaseIds, SortDirection sortDirection) {
         if (releaseIds != null && releaseIds.size() > 0) {
-            releaseIds.sort(new ReleaseIdComparator(sortDirection));
+            // wrap once, rather than on every comparison, then put the originals back in sorted order
+            List<Sortable> sortables = new ArrayList<Sortable>(releaseIds.size());
+            for (ReleaseId releaseId : releaseIds) {
+                sortables.add(new Sortable(releaseId));
+            }
+            final ReleaseIdComparator comparator = new ReleaseIdComparator(sortDirection);
+            sortables.sort(new Comparator<Sortable>() {
+                @Override
+                public int compare(Sortable o1, Sortable o2) {
+                    return comparator.compare(o1.comparable, o2.comparable);
+                }
+            });
+            for (int i=0; i < sortables.size(); i++) {
+                releaseIds.set(i, sortables.get(i).original);
+            }
             return releaseIds.get(0);
         }
         return null;
     }
 
+    private static final class Sortable {
+
+        private final ReleaseId original;
+        private final ComparableReleaseId comparable;
+
+        private Sortable(ReleaseId original) {
+            this.original = original;
+            this.comparable = toComparable(original);
+        }
+
+    }
+
     public static void main(String[] args) {
         boolean valid = main(args, System.out, System.err);
         if (!valid) {
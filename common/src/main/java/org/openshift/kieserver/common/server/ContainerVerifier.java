@@ -16,6 +16,17 @@
 package org.openshift.kieserver.common.server;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.kie.api.KieServices;
 import org.kie.api.builder.Message;
@@ -31,10 +42,24 @@ public class ContainerVerifier {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ContainerVerifier.class);
 
+    private static final String PARALLEL = "--parallel";
+    private static final String NO_CACHE = "--no-cache";
+
+    private final VerificationCache cache;
+
+    public ContainerVerifier() {
+        this(null);
+    }
+
+    // package-protected for JUnit testing
+    ContainerVerifier(VerificationCache cache) {
+        this.cache = cache;
+    }
+
     public boolean verify(String gav) {
         boolean verified;
         try {
-            ReleaseId releaseId = new ComparableReleaseId(gav);
+            ReleaseId releaseId = ComparableReleaseId.valueOf(gav);
             verified = verify(releaseId);
         } catch (Throwable t) {
             LOGGER.error(t.getMessage(), t);
@@ -46,7 +71,7 @@ public class ContainerVerifier {
     public boolean verify(String groupId, String artifactId, String version) {
         boolean verified;
         try {
-            ReleaseId releaseId = new ComparableReleaseId(groupId, artifactId, version);
+            ReleaseId releaseId = ComparableReleaseId.valueOf(groupId, artifactId, version);
             verified = verify(releaseId);
         } catch (Throwable t) {
             LOGGER.error(t.getMessage(), t);
@@ -69,24 +94,10 @@ public class ContainerVerifier {
     }
 
     public boolean verify(KieContainer container) {
-        boolean verified = true;
+        boolean verified;
         try {
             Results results = container.verify();
-            for (Message message : results.getMessages()) {
-                Level level = message.getLevel();
-                switch (level) {
-                    case INFO:
-                        LOGGER.info(message.toString());
-                        break;
-                    case WARNING:
-                        LOGGER.warn(message.toString());
-                        break;
-                    case ERROR:
-                        LOGGER.error(message.toString());
-                        verified = false;
-                        break;
-                }
-            }
+            verified = log(results.getMessages());
         } catch (Throwable t) {
             LOGGER.error(t.getMessage(), t);
             verified = false;
@@ -94,6 +105,171 @@ public class ContainerVerifier {
         return verified;
     }
 
+    /**
+     * Verifies the gavs on up to parallelism threads, without logging. The verifications come back
+     * in the order of the gavs, to be logged with {@link Verification#log()}.
+     */
+    public List<Verification> verifyAll(List<String> gavs, int parallelism) {
+        if (gavs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (parallelism < 2 || gavs.size() == 1) {
+            List<Verification> verifications = new ArrayList<Verification>(gavs.size());
+            for (String gav : gavs) {
+                verifications.add(collect(gav));
+            }
+            return verifications;
+        }
+        final AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, gavs.size()), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, ContainerVerifier.class.getSimpleName() + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Verification>> futures = new ArrayList<Future<Verification>>(gavs.size());
+            for (final String gav : gavs) {
+                futures.add(executor.submit(new Callable<Verification>() {
+                    @Override
+                    public Verification call() {
+                        return collect(gav);
+                    }
+                }));
+            }
+            List<Verification> verifications = new ArrayList<Verification>(gavs.size());
+            for (int i=0; i < futures.size(); i++) {
+                try {
+                    verifications.add(futures.get(i).get());
+                } catch (ExecutionException ee) {
+                    verifications.add(new Verification(gavs.get(i), Collections.<Message>emptyList(), ee.getCause(), 0, false));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    verifications.add(new Verification(gavs.get(i), Collections.<Message>emptyList(), ie, 0, false));
+                }
+            }
+            return verifications;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Verification collect(String gav) {
+        if (cache != null) {
+            Verification cached = cache.get(gav);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        long start = System.nanoTime();
+        List<Message> messages = Collections.emptyList();
+        Throwable error = null;
+        try {
+            KieContainer container = KieServices.Factory.get().newKieContainer(ComparableReleaseId.valueOf(gav));
+            messages = container.verify().getMessages();
+        } catch (Throwable t) {
+            error = t;
+        }
+        Verification verification = new Verification(gav, messages, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+        if (cache != null) {
+            cache.put(verification);
+        }
+        return verification;
+    }
+
+    private static boolean log(List<Message> messages) {
+        boolean verified = true;
+        for (Message message : messages) {
+            Level level = message.getLevel();
+            switch (level) {
+                case INFO:
+                    LOGGER.info(message.toString());
+                    break;
+                case WARNING:
+                    LOGGER.warn(message.toString());
+                    break;
+                case ERROR:
+                    LOGGER.error(message.toString());
+                    verified = false;
+                    break;
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * The outcome of verifying one gav: its messages, or what kept it from being verified, and how long it took.
+     * A cached verification took only as long as its lookup.
+     */
+    public static final class Verification {
+
+        private final String gav;
+        private final List<Message> messages;
+        private final Throwable error;
+        private final long millis;
+        private final boolean cached;
+
+        Verification(String gav, List<Message> messages, Throwable error, long millis, boolean cached) {
+            this.gav = gav;
+            this.messages = messages;
+            this.error = error;
+            this.millis = millis;
+            this.cached = cached;
+        }
+
+        public String getGav() {
+            return gav;
+        }
+
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public boolean isCached() {
+            return cached;
+        }
+
+        public boolean isVerified() {
+            if (error != null) {
+                return false;
+            }
+            for (Message message : messages) {
+                if (Level.ERROR.equals(message.getLevel())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Logs the messages, then the outcome. Returns true if verified.
+         */
+        public boolean log() {
+            boolean verified = ContainerVerifier.log(messages);
+            if (error != null) {
+                LOGGER.error(error.getMessage(), error);
+                verified = false;
+            }
+            if (verified) {
+                LOGGER.info(gav + " verified in " + millis + "ms" + (cached ? " (cached)." : "."));
+            } else {
+                LOGGER.error(gav + " not verified.");
+            }
+            return verified;
+        }
+
+    }
+
     public static void main(String[] args) {
         boolean verified = main(args, System.out, System.err);
         if (!verified) {
@@ -102,31 +278,78 @@ public class ContainerVerifier {
     }
 
     // package-protected for JUnit testing
-    static final String USAGE = "Usage: java " + ContainerVerifier.class.getName() + " <gav1> <gav2> ...\n";
+    static final String USAGE = "Usage: java " + ContainerVerifier.class.getName() + " [" + PARALLEL + "[=<threads>]] [" + NO_CACHE + "] <gav1> <gav2> ...\n";
     static boolean main(String[] args, PrintStream out, PrintStream err) {
-        boolean triggered = false;
-        boolean verified = true;
-        if (args != null && args.length > 0) {
-            ContainerVerifier verifier = new ContainerVerifier();
+        int parallelism = 1;
+        boolean noCache = false;
+        List<String> gavs = new ArrayList<String>();
+        if (args != null) {
             for (String arg : args) {
                 if (arg != null) {
                     arg = arg.trim();
-                    if (!arg.isEmpty()) {
-                        triggered = true;
-                        if (verifier.verify(arg)) {
-                            LOGGER.info(arg + " verified.");
-                        } else {
-                            LOGGER.error(arg + " not verified.");
-                            verified = false;
+                    if (arg.startsWith(PARALLEL)) {
+                        parallelism = getParallelism(arg);
+                        if (parallelism < 1) {
+                            err.print(USAGE);
+                            return false;
                         }
+                    } else if (NO_CACHE.equals(arg)) {
+                        noCache = true;
+                    } else if (!arg.isEmpty()) {
+                        gavs.add(arg);
                     }
                 }
             }
         }
-        if (!triggered) {
+        if (gavs.isEmpty()) {
             err.print(USAGE);
+            return true;
+        }
+        boolean verified = true;
+        VerificationCache cache = noCache ? null : VerificationCache.fromEnvironment();
+        ContainerVerifier verifier = new ContainerVerifier(cache);
+        if (parallelism == 1) {
+            for (String gav : gavs) {
+                verified &= verifier.verifyAll(Collections.singletonList(gav), 1).get(0).log();
+            }
+        } else {
+            long start = System.nanoTime();
+            int count = 0;
+            // logged in argument order, whichever finished first
+            for (Verification verification : verifier.verifyAll(gavs, parallelism)) {
+                if (verification.log()) {
+                    count++;
+                } else {
+                    verified = false;
+                }
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LOGGER.info(count + " of " + gavs.size() + " verified in " + millis + "ms on " + parallelism + " threads.");
+        }
+        if (cache != null) {
+            LOGGER.info(cache.toString());
         }
         return verified;
     }
 
+    /**
+     * The thread count of a --parallel or --parallel=N argument; the number of processors if no N,
+     * or -1 if N is not a positive number.
+     * package-protected for JUnit testing
+     */
+    static int getParallelism(String arg) {
+        if (PARALLEL.equals(arg)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        if (arg.startsWith(PARALLEL + "=")) {
+            try {
+                int parallelism = Integer.parseInt(arg.substring(PARALLEL.length() + 1).trim());
+                return parallelism > 0 ? parallelism : -1;
+            } catch (NumberFormatException nfe) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
 }
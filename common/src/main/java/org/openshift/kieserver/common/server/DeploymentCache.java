@@ -0,0 +1,297 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Size-bounded, LRU ordered and TTL evicting cache of instance id to deployment id lookups.
+ * A process instance (and its tasks, work items and jobs) never moves to another deployment,
+ * so once resolved the answer can be reused by every redirected REST or JMS call.
+ * Lookups that resolved nothing are cached too, but with a shorter TTL.
+ */
+public final class DeploymentCache {
+
+    public static enum IdType {
+        PROCESS_INSTANCE,
+        TASK_INSTANCE,
+        WORK_ITEM,
+        JOB
+    }
+
+    public static interface Loader {
+
+        public String load(IdType idType, long id);
+
+    }
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+    static final long DEFAULT_TTL_SECONDS = 3600;
+    static final long DEFAULT_NEGATIVE_TTL_SECONDS = 10;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeploymentCache.class);
+
+    private static final DeploymentCache INSTANCE = new DeploymentCache(
+            (int)getEnv("KIE_CONTAINER_REDIRECT_CACHE_SIZE", DEFAULT_MAX_SIZE),
+            TimeUnit.SECONDS.toMillis(getEnv("KIE_CONTAINER_REDIRECT_CACHE_TTL", DEFAULT_TTL_SECONDS)),
+            TimeUnit.SECONDS.toMillis(getEnv("KIE_CONTAINER_REDIRECT_CACHE_NEGATIVE_TTL", DEFAULT_NEGATIVE_TTL_SECONDS)));
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Map<Key,Value> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // package-protected for JUnit testing
+    DeploymentCache(int maxSize, long ttlMillis, long negativeTtlMillis) {
+        this.maxSize = Math.max(maxSize, 0);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        // access-ordered so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<Key,Value>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key,Value> eldest) {
+                if (size() > DeploymentCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Returns the cached deployment id for the given id, using the loader (outside of any lock) on a miss.
+     */
+    public String getDeploymentId(IdType idType, long id, Loader loader) {
+        Key key = new Key(idType, id);
+        if (!isEnabled()) {
+            return load(key, loader);
+        }
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Value value = entries.get(key);
+            if (value != null) {
+                if (now - value.expires < 0) {
+                    hits.incrementAndGet();
+                    return value.deploymentId;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        return load(key, loader);
+    }
+
+    /**
+     * Resolves a batch of ids, highest (most recent) id first, until limit of them resolved.
+     * Duplicates are dropped, cached answers are all read under a single lock, and only
+     * the misses reach the loader.
+     */
+    public LongStringMap getDeploymentIds(IdType idType, long[] ids, int limit, Loader loader) {
+        long[] sorted = distinctDescending(ids);
+        LongStringMap deploymentIds = new LongStringMap(Math.min(sorted.length, limit));
+        if (sorted.length == 0 || limit < 1) {
+            return deploymentIds;
+        }
+        boolean[] cached = new boolean[sorted.length];
+        String[] cachedDeploymentIds = new String[sorted.length];
+        if (isEnabled()) {
+            long now = System.nanoTime();
+            synchronized (entries) {
+                for (int i=0; i < sorted.length; i++) {
+                    Key key = new Key(idType, sorted[i]);
+                    Value value = entries.get(key);
+                    if (value != null) {
+                        if (now - value.expires < 0) {
+                            cached[i] = true;
+                            cachedDeploymentIds[i] = value.deploymentId;
+                        } else {
+                            entries.remove(key);
+                            evictions.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+        for (int i=0; i < sorted.length; i++) {
+            String deploymentId;
+            if (cached[i]) {
+                hits.incrementAndGet();
+                deploymentId = cachedDeploymentIds[i];
+            } else {
+                deploymentId = load(new Key(idType, sorted[i]), loader);
+            }
+            if (deploymentId != null) {
+                deploymentIds.put(sorted[i], deploymentId);
+                if (deploymentIds.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return deploymentIds;
+    }
+
+    private String load(Key key, Loader loader) {
+        misses.incrementAndGet();
+        String deploymentId = loader.load(key.idType, key.id);
+        if (isEnabled()) {
+            long expires = System.nanoTime() + (deploymentId != null ? ttlNanos : negativeTtlNanos);
+            synchronized (entries) {
+                entries.put(key, new Value(deploymentId, expires));
+            }
+        }
+        return deploymentId;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: size=[%s], maxSize=[%s], hits=[%s], misses=[%s], evictions=[%s]",
+                getClass().getSimpleName(), size(), maxSize, getHits(), getMisses(), getEvictions());
+    }
+
+    public static DeploymentCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static long[] distinctDescending(long[] ids) {
+        if (ids == null || ids.length == 0) {
+            return new long[0];
+        }
+        long[] ascending = ids.clone();
+        Arrays.sort(ascending);
+        long[] descending = new long[ascending.length];
+        int n = 0;
+        for (int i=ascending.length - 1; i > -1; i--) {
+            if (n == 0 || descending[n - 1] != ascending[i]) {
+                descending[n++] = ascending[i];
+            }
+        }
+        return n < descending.length ? Arrays.copyOf(descending, n) : descending;
+    }
+
+    private static long getEnv(String name, long defaultValue) {
+        return toLong(name, System.getenv(name), defaultValue);
+    }
+
+    /**
+     * Parses a size or ttl, falling back to the default (with a warning) on anything that is not a number
+     * from 0 up to Integer.MAX_VALUE, since a bad value must not keep the cache (and all redirects) from
+     * initializing.
+     * package-protected for JUnit testing
+     */
+    static long toLong(String name, String s, long defaultValue) {
+        if (s != null) {
+            s = s.trim();
+            if (!s.isEmpty()) {
+                try {
+                    long value = Long.parseLong(s);
+                    if (value >= 0 && value <= Integer.MAX_VALUE) {
+                        return value;
+                    }
+                } catch (NumberFormatException e) {
+                    // warned below
+                }
+                LOGGER.warn(String.format("invalid %s: %s, using %s", name, s, defaultValue));
+            }
+        }
+        return defaultValue;
+    }
+
+    private static final class Key {
+
+        private final IdType idType;
+        private final long id;
+
+        private Key(IdType idType, long id) {
+            this.idType = idType;
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + idType.hashCode();
+            result = prime * result + (int)(id ^ (id >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return idType == other.idType && id == other.id;
+        }
+
+    }
+
+    private static final class Value {
+
+        private final String deploymentId;
+        private final long expires;
+
+        private Value(String deploymentId, long expires) {
+            this.deploymentId = deploymentId;
+            this.expires = expires;
+        }
+
+    }
+
+}
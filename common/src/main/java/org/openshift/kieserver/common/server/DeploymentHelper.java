@@ -17,10 +17,8 @@ package org.openshift.kieserver.common.server;
 
 import static org.openshift.kieserver.common.server.ServerUtil.CAPABILITY_BPM;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeSet;
 
 import org.jbpm.services.api.RuntimeDataService;
 import org.jbpm.services.api.model.ProcessInstanceDesc;
@@ -31,23 +29,43 @@ import org.kie.internal.KieInternalServices;
 import org.kie.internal.process.CorrelationKey;
 import org.kie.internal.process.CorrelationKeyFactory;
 import org.openshift.kieserver.common.id.ConversationId;
+import org.openshift.kieserver.common.server.DeploymentCache.IdType;
 
 public class DeploymentHelper {
 
     private final RuntimeDataService runtimeDataService;
     private final ExecutorService executorService;
     private final CorrelationKeyFactory correlationKeyFactory;
+    private final DeploymentCache deploymentCache;
+    private final DeploymentCache.Loader deploymentLoader;
 
     public DeploymentHelper() {
-        runtimeDataService = ServerUtil.getAppComponentService(CAPABILITY_BPM, RuntimeDataService.class);
-        executorService = ServerUtil.getAppComponentService(CAPABILITY_BPM, ExecutorService.class);
+        this(ServerUtil.getAppComponentService(CAPABILITY_BPM, RuntimeDataService.class),
+             ServerUtil.getAppComponentService(CAPABILITY_BPM, ExecutorService.class));
+    }
+
+    public DeploymentHelper(RuntimeDataService runtimeDataService, ExecutorService executorService) {
+        this.runtimeDataService = runtimeDataService;
+        this.executorService = executorService;
         correlationKeyFactory = KieInternalServices.Factory.get().newCorrelationKeyFactory();
+        // shared so the web filter and the jms interceptor are served by the same cache
+        deploymentCache = DeploymentCache.getInstance();
+        deploymentLoader = new DeploymentCache.Loader() {
+            @Override
+            public String load(IdType idType, long id) {
+                return loadDeploymentId(idType, id);
+            }
+        };
+    }
+
+    public DeploymentCache getDeploymentCache() {
+        return deploymentCache;
     }
 
     public String getDeploymentIdByConversationId(String conversationId) {
         conversationId = trimToNull(conversationId);
         if (conversationId != null) {
-            return getDeploymentIdByConversationId(ConversationId.fromString(conversationId));
+            return ConversationId.getContainerId(conversationId);
         }
         return null;
     }
@@ -87,10 +105,7 @@ public class DeploymentHelper {
 
     public String getDeploymentIdByJobId(Long jobId) {
         if (jobId != null) {
-            RequestInfo requestInfo = executorService.getRequestById(jobId);
-            if (requestInfo instanceof org.jbpm.executor.entities.RequestInfo) {
-                return ((org.jbpm.executor.entities.RequestInfo)requestInfo).getDeploymentId();
-            }
+            return deploymentCache.getDeploymentId(IdType.JOB, jobId, deploymentLoader);
         }
         return null;
     }
@@ -105,48 +120,59 @@ public class DeploymentHelper {
 
     public String getDeploymentIdByProcessInstanceIds(String[] pInstanceIds) {
         if (pInstanceIds != null) {
-            List<Long> list = new ArrayList<Long>(pInstanceIds.length);
+            long[] ids = new long[pInstanceIds.length];
+            int n = 0;
             for (String pInstanceId : pInstanceIds) {
                 pInstanceId = trimToNull(pInstanceId);
                 if (pInstanceId != null) {
-                    list.add(Long.valueOf(pInstanceId));
+                    ids[n++] = Long.parseLong(pInstanceId);
                 }
             }
-            return getDeploymentIdByProcessInstanceIds(list);
+            return getDeploymentIdByProcessInstanceIds(n < ids.length ? Arrays.copyOf(ids, n) : ids);
         }
         return null;
     }
 
     public String getDeploymentIdByProcessInstanceId(Long pInstanceId) {
         if (pInstanceId != null) {
-            ProcessInstanceDesc desc = runtimeDataService.getProcessInstanceById(pInstanceId);
-            if (desc != null) {
-                return desc.getDeploymentId();
-            }
+            return deploymentCache.getDeploymentId(IdType.PROCESS_INSTANCE, pInstanceId, deploymentLoader);
         }
         return null;
     }
 
     public String getDeploymentIdByProcessInstanceIds(List<Long> pInstanceIds) {
         if (pInstanceIds != null) {
-            TreeSet<Long> set = new TreeSet<Long>();
+            long[] ids = new long[pInstanceIds.size()];
+            int n = 0;
             for (Long pInstanceId : pInstanceIds) {
                 if (pInstanceId != null) {
-                    set.add(pInstanceId);
+                    ids[n++] = pInstanceId.longValue();
                 }
             }
-            // using a descending iterator so the most current process instance gets checked first
-            Iterator<Long> iter = set.descendingIterator();
-            while (iter.hasNext()) {
-                String deploymentId = getDeploymentIdByProcessInstanceId(iter.next());
-                if (deploymentId != null) {
-                    return deploymentId;
-                }
+            return getDeploymentIdByProcessInstanceIds(n < ids.length ? Arrays.copyOf(ids, n) : ids);
+        }
+        return null;
+    }
+
+    public String getDeploymentIdByProcessInstanceIds(long[] pInstanceIds) {
+        if (pInstanceIds != null) {
+            // the most current process instance that resolves wins
+            LongStringMap deploymentIds = getDeploymentIdsByProcessInstanceIds(pInstanceIds, 1);
+            if (!deploymentIds.isEmpty()) {
+                return deploymentIds.get(deploymentIds.keys()[0]);
             }
         }
         return null;
     }
 
+    /**
+     * Resolves up to limit of the given process instance ids, most current first, with cached ids
+     * answered in one go. Ids which do not resolve are left out of the returned map.
+     */
+    public LongStringMap getDeploymentIdsByProcessInstanceIds(long[] pInstanceIds, int limit) {
+        return deploymentCache.getDeploymentIds(IdType.PROCESS_INSTANCE, pInstanceIds, limit, deploymentLoader);
+    }
+
     public String getDeploymentIdByTaskInstanceId(String tInstanceId) {
         tInstanceId = trimToNull(tInstanceId);
         if (tInstanceId != null) {
@@ -157,10 +183,7 @@ public class DeploymentHelper {
 
     public String getDeploymentIdByTaskInstanceId(Long tInstanceId) {
         if (tInstanceId != null) {
-            UserTaskInstanceDesc desc = runtimeDataService.getTaskById(tInstanceId);
-            if (desc != null) {
-                return desc.getDeploymentId();
-            }
+            return deploymentCache.getDeploymentId(IdType.TASK_INSTANCE, tInstanceId, deploymentLoader);
         }
         return null;
     }
@@ -175,14 +198,33 @@ public class DeploymentHelper {
 
     public String getDeploymentIdByWorkItemId(Long workItemId) {
         if (workItemId != null) {
-            UserTaskInstanceDesc desc = runtimeDataService.getTaskByWorkItemId(workItemId);
-            if (desc != null) {
-                return desc.getDeploymentId();
-            }
+            return deploymentCache.getDeploymentId(IdType.WORK_ITEM, workItemId, deploymentLoader);
         }
         return null;
     }
 
+    private String loadDeploymentId(IdType idType, long id) {
+        switch (idType) {
+            case PROCESS_INSTANCE:
+                ProcessInstanceDesc pDesc = runtimeDataService.getProcessInstanceById(id);
+                return pDesc != null ? pDesc.getDeploymentId() : null;
+            case TASK_INSTANCE:
+                UserTaskInstanceDesc tDesc = runtimeDataService.getTaskById(id);
+                return tDesc != null ? tDesc.getDeploymentId() : null;
+            case WORK_ITEM:
+                UserTaskInstanceDesc wDesc = runtimeDataService.getTaskByWorkItemId(id);
+                return wDesc != null ? wDesc.getDeploymentId() : null;
+            case JOB:
+                RequestInfo requestInfo = executorService.getRequestById(id);
+                if (requestInfo instanceof org.jbpm.executor.entities.RequestInfo) {
+                    return ((org.jbpm.executor.entities.RequestInfo)requestInfo).getDeploymentId();
+                }
+                return null;
+            default:
+                throw new IllegalArgumentException("unknown id type: " + idType);
+        }
+    }
+
     private String trimToNull(String s) {
         if (s != null) {
             s = s.trim();
@@ -0,0 +1,149 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of primitive long keys to non-null strings, so batch lookups
+ * of instance ids do not box every id. Not thread-safe.
+ */
+public final class LongStringMap {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private String[] values;
+    private int size = 0;
+
+    public LongStringMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongStringMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        // stay at most half full
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new String[capacity];
+    }
+
+    public String get(long key) {
+        int i = indexOf(key);
+        return i > -1 ? values[i] : null;
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) > -1;
+    }
+
+    /**
+     * Returns the previous value, or null if there was none.
+     */
+    public String put(long key, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value");
+        }
+        int mask = keys.length - 1;
+        for (int i=hash(key) & mask; ; i=(i + 1) & mask) {
+            if (values[i] == null) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) {
+                    resize();
+                }
+                return null;
+            }
+            if (keys[i] == key) {
+                String previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The keys, in ascending order.
+     */
+    public long[] keys() {
+        long[] k = new long[size];
+        int n = 0;
+        for (int i=0; i < values.length; i++) {
+            if (values[i] != null) {
+                k[n++] = keys[i];
+            }
+        }
+        Arrays.sort(k);
+        return k;
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        for (int i=hash(key) & mask; values[i] != null; i=(i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new String[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int j=0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // ids are mostly sequential, so spread them before masking
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (long key : keys()) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(get(key));
+        }
+        return sb.append('}').toString();
+    }
+
+}
@@ -24,13 +24,18 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.kie.api.builder.ReleaseId;
 import org.kie.server.api.model.KieContainerResource;
@@ -44,14 +49,22 @@ import org.openshift.kieserver.common.id.ReleaseIdComparator;
 
 import com.thoughtworks.xstream.XStream;
 
+/**
+ * Immutable snapshot of the container deployment configuration. Everything the redirect
+ * lookups need is indexed in hash tables (and every digest computed) up front, since
+ * these are called several times for every redirected request and message.
+ * <p>
+ * The current snapshot can be replaced at runtime with {@link #reload(String)} (see
+ * {@link ServerConfigWatcher}); callers should get it once per request and use that throughout.
+ */
 public class ServerConfig {
 
-    private static final ServerConfig INSTANCE = new ServerConfig(
+    private static final AtomicReference<ServerConfig> INSTANCE = new AtomicReference<ServerConfig>(new ServerConfig(
             System.getenv("KIE_SERVER_REPO"),
             System.getenv("KIE_SERVER_ID"),
             System.getenv("KIE_SERVER_STATE_FILE"),
             System.getenv("KIE_CONTAINER_DEPLOYMENT"),
-            System.getenv("KIE_CONTAINER_REDIRECT_ENABLED"));
+            System.getenv("KIE_CONTAINER_REDIRECT_ENABLED")));
 
     private final String serverRepo;
     private final String serverId;
@@ -59,10 +72,12 @@ public class ServerConfig {
     private final String containerDeployment;
     private final boolean containerRedirectEnabled;
     private final Coder coder;
-    private final Map<String,Set<ReleaseId>> containerAliases_releaseIds;
+    private final Set<String> deploymentIds;
+    private final Map<String,ReleaseId> deploymentIds_releaseIds;
     private final Map<String,String> containerConfigs_deploymentIds;
     private final Map<String,String> deploymentIds_containerConfigs;
     private final Map<String,String> deploymentIds_containerAliases;
+    private final Map<String,String> containerAliases_defaultDeploymentIds;
 
     // package-protected for JUnit testing
     ServerConfig(
@@ -88,10 +103,13 @@ public class ServerConfig {
         this.containerDeployment = containerDeployment != null ? containerDeployment.trim() : "";
         this.containerRedirectEnabled = containerRedirectEnabled != null && Boolean.valueOf(containerRedirectEnabled.trim().toLowerCase());
         coder = new MD5();
-        containerAliases_releaseIds = new TreeMap<String,Set<ReleaseId>>();
-        containerConfigs_deploymentIds = new TreeMap<String,String>();
-        deploymentIds_containerConfigs = new TreeMap<String,String>();
-        deploymentIds_containerAliases = new TreeMap<String,String>();
+        Map<String,Set<ReleaseId>> containerAliases_releaseIds = new TreeMap<String,Set<ReleaseId>>();
+        // in alias, then descending version order, for toState()
+        Map<String,ReleaseId> deploymentIds_releaseIds = new LinkedHashMap<String,ReleaseId>();
+        Map<String,String> containerConfigs_deploymentIds = new HashMap<String,String>();
+        Map<String,String> deploymentIds_containerConfigs = new HashMap<String,String>();
+        Map<String,String> deploymentIds_containerAliases = new HashMap<String,String>();
+        Map<String,String> containerAliases_defaultDeploymentIds = new HashMap<String,String>();
         if (this.containerDeployment.length() > 0) {
             for (String unit :  this.containerDeployment.split("\\|")) {
                 String[] split = unit.split("=");
@@ -105,7 +123,7 @@ public class ServerConfig {
                             releaseIds = new TreeSet<ReleaseId>(new ReleaseIdComparator(DESCENDING));
                             containerAliases_releaseIds.put(containerAlias, releaseIds);
                         }
-                        ReleaseId releaseId = new ComparableReleaseId(gav);
+                        ReleaseId releaseId = ComparableReleaseId.valueOf(gav);
                         releaseIds.add(releaseId);
                     }
                 }
@@ -129,13 +147,28 @@ public class ServerConfig {
                 }
                 for (ReleaseId releaseId : releaseIds) {
                     String containerConfig = createContainerConfig(containerAlias, releaseId);
-                    String deploymentId = createDeploymentId(containerAlias, releaseId);
+                    String deploymentId = createDeploymentId(containerConfig, containerAlias);
+                    if (!containerAliases_defaultDeploymentIds.containsKey(containerAlias)) {
+                        // the first releaseId will be the default (latest) version; see above
+                        containerAliases_defaultDeploymentIds.put(containerAlias, deploymentId);
+                    }
+                    deploymentIds_releaseIds.put(deploymentId, releaseId);
                     containerConfigs_deploymentIds.put(containerConfig, deploymentId);
                     deploymentIds_containerConfigs.put(deploymentId, containerConfig);
                     deploymentIds_containerAliases.put(deploymentId, containerAlias);
                 }
             }
         }
+        this.deploymentIds = Collections.unmodifiableSet(new HashSet<String>(deploymentIds_releaseIds.keySet()));
+        this.deploymentIds_releaseIds = Collections.unmodifiableMap(deploymentIds_releaseIds);
+        this.containerConfigs_deploymentIds = Collections.unmodifiableMap(containerConfigs_deploymentIds);
+        this.deploymentIds_containerConfigs = Collections.unmodifiableMap(deploymentIds_containerConfigs);
+        this.deploymentIds_containerAliases = Collections.unmodifiableMap(deploymentIds_containerAliases);
+        this.containerAliases_defaultDeploymentIds = Collections.unmodifiableMap(containerAliases_defaultDeploymentIds);
+    }
+
+    public String getContainerDeployment() {
+        return containerDeployment;
     }
 
     public boolean isContainerRedirectEnabled() {
@@ -143,7 +176,7 @@ public class ServerConfig {
     }
 
     public boolean hasDeploymentId(String deploymentId) {
-        return deploymentId != null && containerConfigs_deploymentIds.containsValue(deploymentId);
+        return deploymentId != null && deploymentIds.contains(deploymentId);
     }
 
     public String getDeploymentIdForContainerConfig(String containerConfig) {
@@ -159,15 +192,7 @@ public class ServerConfig {
     }
 
     public String getDefaultDeploymentIdForAlias(String containerAlias) {
-        if (containerAlias != null) {
-            Set<ReleaseId> releaseIds = containerAliases_releaseIds.get(containerAlias);
-            if (releaseIds != null && releaseIds.size() > 0) {
-                // the first releaseId will be the default (latest) version; see constructor above
-                ReleaseId defaultReleaseId = releaseIds.iterator().next();
-                return createDeploymentId(containerAlias, defaultReleaseId);
-            }
-        }
-        return null;
+        return containerAlias != null ? containerAliases_defaultDeploymentIds.get(containerAlias) : null;
     }
 
     private String createContainerConfig(String containerAlias, ReleaseId releaseId) {
@@ -179,9 +204,9 @@ public class ServerConfig {
      * jboss-dockerfiles/scripts/os-kieserver-launch/added/kieserver-config.sh
      * function getKieDeploymentId()
      */
-    private String createDeploymentId(String containerAlias, ReleaseId releaseId) {
+    private String createDeploymentId(String containerConfig, String containerAlias) {
         if (containerRedirectEnabled) {
-            return coder.encode(createContainerConfig(containerAlias, releaseId));
+            return coder.encode(containerConfig);
         } else {
             return containerAlias;
         }
@@ -212,28 +237,59 @@ public class ServerConfig {
         config.addConfigItem(new KieServerConfigItem(KIE_SERVER_ID, serverId, string));
         state.setConfiguration(config);
         Set<KieContainerResource> resources = new LinkedHashSet<KieContainerResource>();
-        for (Entry<String,Set<ReleaseId>> entry : containerAliases_releaseIds.entrySet()) {
-            String containerAlias = entry.getKey();
-            Set<ReleaseId> releaseIds = entry.getValue();
-            for (ReleaseId releaseId : releaseIds) {
-                String deploymentId = createDeploymentId(containerAlias, releaseId);
-                KieContainerResource container = new KieContainerResource(
-                        deploymentId,
-                        new org.kie.server.api.model.ReleaseId(releaseId),
-                        STARTED);
-                resources.add(container);
-            }
+        for (Entry<String,ReleaseId> entry : deploymentIds_releaseIds.entrySet()) {
+            KieContainerResource container = new KieContainerResource(
+                    entry.getKey(),
+                    new org.kie.server.api.model.ReleaseId(entry.getValue()),
+                    STARTED);
+            resources.add(container);
         }
         state.setContainers(resources);
         return state;
     }
 
+    /**
+     * A copy of this snapshot with another container deployment. Whether container redirect
+     * is enabled can only be decided at startup, so it is kept as is.
+     */
+    public ServerConfig withContainerDeployment(String containerDeployment) {
+        return new ServerConfig(
+                serverRepo,
+                serverId,
+                serverStateFile,
+                containerDeployment,
+                String.valueOf(containerRedirectEnabled));
+    }
+
     public static ServerConfig getInstance() {
-        return INSTANCE;
+        return INSTANCE.get();
+    }
+
+    // package-protected for benchmarks
+    static void setInstance(ServerConfig serverConfig) {
+        INSTANCE.set(serverConfig);
+    }
+
+    /**
+     * Builds a snapshot for the container deployment and publishes it, unless it is the current
+     * one already. The new snapshot is built before the swap, so readers never wait on it.
+     */
+    public static ServerConfig reload(String containerDeployment) {
+        String trimmed = containerDeployment != null ? containerDeployment.trim() : "";
+        while (true) {
+            ServerConfig current = INSTANCE.get();
+            if (trimmed.equals(current.containerDeployment)) {
+                return current;
+            }
+            ServerConfig reloaded = current.withContainerDeployment(trimmed);
+            if (INSTANCE.compareAndSet(current, reloaded)) {
+                return reloaded;
+            }
+        }
     }
 
     public static void main(String[] args) {
-        boolean valid = main(INSTANCE, args, System.out, System.err);
+        boolean valid = main(getInstance(), args, System.out, System.err);
         if (!valid) {
             System.exit(1);
         }
@@ -0,0 +1,193 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the file named by KIE_CONTAINER_DEPLOYMENT_FILE (every KIE_CONTAINER_DEPLOYMENT_RELOAD_INTERVAL
+ * seconds, where 0 or less disables reloading) and reloads the {@link ServerConfig} snapshot when its
+ * content changes. The file holds a
+ * KIE_CONTAINER_DEPLOYMENT value; units can also go on separate lines, and lines starting with # are ignored.
+ * <p>
+ * Only the redirect configuration is reloaded: the containers for any new versions still need to be
+ * created in the KIE Server under their deployment ids.
+ * <p>
+ * Every {@link #start()} must be matched by a {@link #stop()}; the polling thread stops with the last user,
+ * so a redeployment does not leave it running (and holding on to the old class loader).
+ */
+public final class ServerConfigWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerConfigWatcher.class);
+
+    static final long DEFAULT_INTERVAL_SECONDS = 10;
+
+    // guarded by the class
+    private static ServerConfigWatcher started = null;
+    private static int users = 0;
+    // the environment does not change, so it is only looked at once
+    private static boolean disabled = false;
+
+    private final File file;
+    private final long intervalMillis;
+    // null when only polled directly
+    private final ScheduledExecutorService executor;
+    private long lastModified = -1;
+    private long lastLength = -1;
+
+    // package-protected for JUnit testing
+    ServerConfigWatcher(File file, long intervalMillis) {
+        this(file, intervalMillis, null);
+    }
+
+    private ServerConfigWatcher(File file, long intervalMillis, ScheduledExecutorService executor) {
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts watching, if a file is configured and nobody has started already.
+     */
+    public static synchronized void start() {
+        users++;
+        if (started != null || disabled) {
+            return;
+        }
+        String path = System.getenv("KIE_CONTAINER_DEPLOYMENT_FILE");
+        long intervalSeconds = toIntervalSeconds(System.getenv("KIE_CONTAINER_DEPLOYMENT_RELOAD_INTERVAL"));
+        if (path == null || path.trim().isEmpty() || intervalSeconds <= 0) {
+            if (intervalSeconds <= 0) {
+                LOGGER.info("reloading disabled by KIE_CONTAINER_DEPLOYMENT_RELOAD_INTERVAL");
+            }
+            disabled = true;
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, ServerConfigWatcher.class.getSimpleName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        started = new ServerConfigWatcher(new File(path.trim()), TimeUnit.SECONDS.toMillis(intervalSeconds), executor);
+        started.schedule();
+    }
+
+    /**
+     * Parses the interval, falling back to the default (with a warning) if it is not a number, since a typo
+     * must not fail the filter or interceptor that starts the watcher.
+     * package-protected for JUnit testing
+     */
+    static long toIntervalSeconds(String interval) {
+        if (interval != null && !interval.trim().isEmpty()) {
+            try {
+                return Long.parseLong(interval.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn(String.format("invalid KIE_CONTAINER_DEPLOYMENT_RELOAD_INTERVAL: %s, using %s", interval, DEFAULT_INTERVAL_SECONDS));
+            }
+        }
+        return DEFAULT_INTERVAL_SECONDS;
+    }
+
+    /**
+     * Stops watching once every user that started has stopped.
+     */
+    public static synchronized void stop() {
+        if (users > 0) {
+            users--;
+        }
+        if (users == 0 && started != null) {
+            started.executor.shutdownNow();
+            started = null;
+            LOGGER.info("stopped watching");
+        }
+    }
+
+    // package-protected for JUnit testing
+    static synchronized boolean isStarted() {
+        return started != null;
+    }
+
+    private void schedule() {
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    poll();
+                } catch (Throwable t) {
+                    // keep serving the current snapshot
+                    LOGGER.error(String.format("unable to reload %s: %s", file, t.getMessage()), t);
+                }
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info(String.format("watching %s every %sms", file, intervalMillis));
+    }
+
+    /**
+     * Returns true if a new snapshot was published.
+     * package-protected for JUnit testing
+     */
+    boolean poll() throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        long modified = file.lastModified();
+        long length = file.length();
+        if (modified == lastModified && length == lastLength) {
+            return false;
+        }
+        String containerDeployment = toContainerDeployment(new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8")));
+        ServerConfig current = ServerConfig.getInstance();
+        ServerConfig reloaded = ServerConfig.reload(containerDeployment);
+        // only now, so that a failed read or reload is tried again on the next poll
+        lastModified = modified;
+        lastLength = length;
+        if (reloaded != current) {
+            LOGGER.info(String.format("reloaded %s", reloaded));
+            return true;
+        }
+        return false;
+    }
+
+    // package-protected for JUnit testing
+    static String toContainerDeployment(String content) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : content.split("\\r?\\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append(line);
+        }
+        return sb.toString();
+    }
+
+}
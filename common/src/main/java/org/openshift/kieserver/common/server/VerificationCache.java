@@ -0,0 +1,593 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.kie.api.KieServices;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.Message.Level;
+import org.kie.api.builder.ReleaseId;
+import org.openshift.kieserver.common.coder.SumCoder;
+import org.openshift.kieserver.common.id.ComparableReleaseId;
+import org.openshift.kieserver.common.server.ContainerVerifier.Verification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verification results on disk, one properties file per gav, kept with the SHA-256 of the engine version and
+ * of the gav's jar, pom, parent poms and dependencies in the local maven repository. A cached result is only used while that
+ * checksum still matches.
+ * <p>
+ * Dependencies are not resolved here, so the checksum also covers the jar and poms of each dependency (other
+ * than test ones), transitively, as found in the local repository. Snapshots are never cached, and neither
+ * are kjars that depend on anything that can change without the kjar changing: a snapshot version or a
+ * version range, a version managed or defined in a parent, or an artifact not in the local repository.
+ * Results that ended in an error (rather than in error messages) are not cached either, and nothing is
+ * cached if the engine version is unknown.
+ */
+final class VerificationCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VerificationCache.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SNAPSHOT = "SNAPSHOT";
+    private static final String CUSTOM_SETTINGS_PROPERTY = "kie.maven.settings.custom";
+    private static final SumCoder GAV_CODER = new SumCoder.SHA256();
+    private static final String[] ENGINE_POM_PROPERTIES = {
+        "META-INF/maven/org.drools/drools-compiler/pom.properties",
+        "META-INF/maven/org.kie/kie-api/pom.properties"
+    };
+
+    private final File directory;
+    private final File localRepository;
+    private final String engineVersion;
+    private final XMLInputFactory inputFactory;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedMillis = new AtomicLong();
+
+    VerificationCache(File directory, File localRepository, String engineVersion) {
+        this.directory = directory;
+        this.localRepository = localRepository;
+        this.engineVersion = engineVersion;
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * The cache in KIE_CONTAINER_VERIFIER_CACHE_DIR (by default ~/.kie/verifier-cache), for kjars in the
+     * local repository kie-ci resolves them into.
+     */
+    static VerificationCache fromEnvironment() {
+        String userHome = System.getProperty("user.home");
+        String dir = System.getenv("KIE_CONTAINER_VERIFIER_CACHE_DIR");
+        File directory = dir != null && !dir.trim().isEmpty() ? new File(dir.trim()) : new File(userHome, ".kie/verifier-cache");
+        File localRepository = getLocalRepository(System.getProperty(CUSTOM_SETTINGS_PROPERTY), userHome, System.getenv("M2_HOME"));
+        String engineVersion = getEngineVersion();
+        if (engineVersion == null) {
+            LOGGER.warn("unable to determine the engine version; verifications will not be cached");
+        }
+        return new VerificationCache(directory, localRepository, engineVersion);
+    }
+
+    /**
+     * The local repository the way kie-ci finds it: the localRepository of the kie.maven.settings.custom
+     * settings (or else ~/.m2/settings.xml), or else of $M2_HOME/conf/settings.xml, by default ~/.m2/repository.
+     * package-protected for JUnit testing
+     */
+    static File getLocalRepository(String customSettings, String userHome, String m2Home) {
+        List<File> settings = new ArrayList<File>();
+        settings.add(customSettings != null && !customSettings.trim().isEmpty() ? new File(customSettings.trim()) : new File(userHome, ".m2/settings.xml"));
+        if (m2Home != null && !m2Home.trim().isEmpty()) {
+            settings.add(new File(m2Home.trim(), "conf/settings.xml"));
+        }
+        for (File file : settings) {
+            String localRepository = file.isFile() ? readLocalRepository(file) : null;
+            if (localRepository != null) {
+                return new File(localRepository.replace("${user.home}", userHome));
+            }
+        }
+        return new File(userHome, ".m2/repository");
+    }
+
+    private static String readLocalRepository(File settings) {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        try {
+            InputStream in = new FileInputStream(settings);
+            try {
+                XMLStreamReader reader = factory.createXMLStreamReader(in);
+                try {
+                    int depth = 0;
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            depth++;
+                            if (depth == 2 && "localRepository".equals(reader.getLocalName())) {
+                                String text = reader.getElementText().trim();
+                                return text.isEmpty() ? null : text;
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT) {
+                            depth--;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("unable to read %s: %s", settings, e.getMessage()));
+        } catch (XMLStreamException e) {
+            LOGGER.warn(String.format("unable to read %s: %s", settings, e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * The version of the drools/kie artifacts on the class path, or null if it cannot be determined.
+     * package-protected for JUnit testing
+     */
+    static String getEngineVersion() {
+        ClassLoader classLoader = KieServices.class.getClassLoader();
+        for (String path : ENGINE_POM_PROPERTIES) {
+            InputStream in = classLoader != null ? classLoader.getResourceAsStream(path) : null;
+            if (in != null) {
+                try {
+                    Properties properties = new Properties();
+                    properties.load(in);
+                    String version = properties.getProperty("version");
+                    if (version != null && !version.trim().isEmpty()) {
+                        return version.trim();
+                    }
+                } catch (IOException e) {
+                    LOGGER.debug(String.format("unable to read %s: %s", path, e.getMessage()));
+                } finally {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        Package pkg = KieServices.class.getPackage();
+        return pkg != null ? pkg.getImplementationVersion() : null;
+    }
+
+    /**
+     * Returns the cached verification of the gav, or null if there is none for its current checksum.
+     */
+    Verification get(String gav) {
+        long start = System.nanoTime();
+        try {
+            File file = getFile(gav);
+            String checksum = file.isFile() ? checksum(gav) : null;
+            if (checksum != null) {
+                Properties properties = new Properties();
+                InputStream in = new FileInputStream(file);
+                try {
+                    properties.load(in);
+                } finally {
+                    in.close();
+                }
+                if (gav.equals(properties.getProperty("gav")) && checksum.equals(properties.getProperty("checksum"))) {
+                    List<Message> messages = new ArrayList<Message>();
+                    int count = Integer.parseInt(properties.getProperty("messages", "0"));
+                    for (int i=0; i < count; i++) {
+                        messages.add(new CachedMessage(properties, "message." + i + "."));
+                    }
+                    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    long verifiedMillis = Long.parseLong(properties.getProperty("millis", "0"));
+                    hits.incrementAndGet();
+                    savedMillis.addAndGet(Math.max(0, verifiedMillis - millis));
+                    return new Verification(gav, messages, null, millis, true);
+                }
+            }
+        } catch (Exception e) {
+            // a broken entry is only a miss
+            LOGGER.warn(String.format("unable to read cached verification of %s: %s", gav, e.getMessage()));
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(Verification verification) {
+        if (verification.getError() != null || verification.isCached()) {
+            return;
+        }
+        String gav = verification.getGav();
+        try {
+            String checksum = checksum(gav);
+            if (checksum == null) {
+                return;
+            }
+            Properties properties = new Properties();
+            properties.setProperty("gav", gav);
+            properties.setProperty("checksum", checksum);
+            properties.setProperty("millis", String.valueOf(verification.getMillis()));
+            List<Message> messages = verification.getMessages();
+            properties.setProperty("messages", String.valueOf(messages.size()));
+            for (int i=0; i < messages.size(); i++) {
+                CachedMessage.store(messages.get(i), properties, "message." + i + ".");
+            }
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("unable to create " + directory);
+            }
+            File file = getFile(gav);
+            // written aside first, so a parallel or interrupted run never reads half an entry
+            File temp = File.createTempFile(file.getName(), ".tmp", directory);
+            try {
+                OutputStream out = new FileOutputStream(temp);
+                try {
+                    properties.store(out, null);
+                } finally {
+                    out.close();
+                }
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                temp.delete();
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("unable to cache verification of %s: %s", gav, e.getMessage()));
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getSavedMillis() {
+        return savedMillis.get();
+    }
+
+    private File getFile(String gav) {
+        return new File(directory, GAV_CODER.encode(gav) + ".properties");
+    }
+
+    /**
+     * The checksum of the engine version and the gav's jar, poms and dependencies, or null if the engine version
+     * is unknown, or the jar, a parent or a dependency is not in the local repository or may change.
+     * package-protected for JUnit testing
+     */
+    String checksum(String gav) throws IOException {
+        ReleaseId releaseId = ComparableReleaseId.valueOf(gav);
+        if (engineVersion == null || releaseId.isSnapshot()) {
+            return null;
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        md.update(engineVersion.getBytes(UTF_8));
+        return update(md, releaseId, true, new HashSet<String>()) ? SumCoder.toHex(md.digest()) : null;
+    }
+
+    /**
+     * Adds the gav, its jar (unless only the pom is used), its pom and parent poms, and the same for each of
+     * their dependencies to the checksum. Returns false if any of them is not in the local repository, or may
+     * resolve differently later (a snapshot, a range, a version that is not declared in the pom itself, or a
+     * classifier or type that is not looked up here).
+     */
+    private boolean update(MessageDigest md, ReleaseId releaseId, boolean withJar, Set<String> seen) throws IOException {
+        if (releaseId.isSnapshot()) {
+            return false;
+        }
+        if (!seen.add(releaseId.toExternalForm())) {
+            // already in the checksum, as a shared dependency or parent
+            return true;
+        }
+        md.update(releaseId.toExternalForm().getBytes(UTF_8));
+        if (withJar) {
+            File jar = getArtifactFile(releaseId, ".jar");
+            if (!jar.isFile()) {
+                return false;
+            }
+            update(md, jar);
+        }
+        File pom = getArtifactFile(releaseId, ".pom");
+        while (true) {
+            if (!pom.isFile()) {
+                // the dependencies and the parent are resolved when building, so unless the pom is here
+                // the build could see other ones
+                return false;
+            }
+            byte[] bytes = Files.readAllBytes(pom.toPath());
+            Pom model = readPom(bytes);
+            if (model.snapshot) {
+                return false;
+            }
+            md.update(bytes);
+            for (Map<String, String> dependency : model.dependencies) {
+                if ("test".equals(dependency.get("scope"))) {
+                    continue;
+                }
+                String type = dependency.get("type");
+                if (dependency.get("classifier") != null || (type != null && !"jar".equals(type) && !"pom".equals(type))) {
+                    return false;
+                }
+                String groupId = model.interpolate(dependency.get("groupId"));
+                String artifactId = model.interpolate(dependency.get("artifactId"));
+                String version = model.interpolate(dependency.get("version"));
+                if (groupId == null || artifactId == null || version == null || isVolatileVersion(version)) {
+                    // the version comes from a parent's dependencyManagement or properties, or is a range
+                    return false;
+                }
+                if (!update(md, ComparableReleaseId.valueOf(groupId, artifactId, version), !"pom".equals(type), seen)) {
+                    return false;
+                }
+            }
+            String parentId = model.getParent();
+            if (parentId == null) {
+                return true;
+            }
+            ReleaseId parent = ComparableReleaseId.valueOf(parentId);
+            if (parent.isSnapshot()) {
+                return false;
+            }
+            if (!seen.add(parent.toExternalForm())) {
+                return true;
+            }
+            pom = getArtifactFile(parent, ".pom");
+        }
+    }
+
+    private File getArtifactFile(ReleaseId releaseId, String extension) {
+        File dir = new File(localRepository, releaseId.getGroupId().replace('.', '/') + "/" + releaseId.getArtifactId() + "/" + releaseId.getVersion());
+        return new File(dir, releaseId.getArtifactId() + "-" + releaseId.getVersion() + extension);
+    }
+
+    /**
+     * Reads the project and parent gav, the properties and the dependencies of a pom, and whether any of its
+     * versions (of the project, parent, dependencies, plugins or properties) is a snapshot or a range. Comments
+     * and other text are not looked at.
+     */
+    private Pom readPom(byte[] bytes) throws IOException {
+        Pom pom = new Pom();
+        Map<String, String> dependency = null;
+        List<String> path = new ArrayList<String>();
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(bytes));
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        String container = path.isEmpty() ? null : path.get(path.size() - 1);
+                        path.add(name);
+                        if (path.size() == 3 && "dependency".equals(name) && "dependencies".equals(container)) {
+                            dependency = new HashMap<String, String>();
+                            continue;
+                        }
+                        boolean version = "version".equals(name);
+                        boolean property = "properties".equals(container);
+                        boolean project = path.size() == 2 && (version || "groupId".equals(name));
+                        boolean parent = path.size() == 3 && "parent".equals(container);
+                        boolean dependent = path.size() == 4 && dependency != null && !"exclusions".equals(name);
+                        if (!version && !property && !project && !parent && !dependent) {
+                            continue;
+                        }
+                        String text = reader.getElementText().trim();
+                        path.remove(path.size() - 1);
+                        if ((version || property) && isVolatileVersion(text)) {
+                            pom.snapshot = true;
+                        }
+                        if (property && path.size() == 2) {
+                            pom.properties.put(name, text);
+                        } else if (project) {
+                            pom.properties.put("project." + name, text);
+                        } else if (parent) {
+                            pom.parent.put(name, text);
+                        } else if (dependent) {
+                            dependency.put(name, text);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if (path.size() == 3 && dependency != null) {
+                            pom.dependencies.add(dependency);
+                            dependency = null;
+                        }
+                        path.remove(path.size() - 1);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return pom;
+    }
+
+    private static boolean isVolatileVersion(String version) {
+        return version.endsWith(SNAPSHOT) || version.startsWith("[") || version.startsWith("(");
+    }
+
+    private static void update(MessageDigest md, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                md.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        long rate = total > 0 ? (hits * 100) / total : 0;
+        return "verification cache " + directory + ": " + hits + " of " + total + " hit (" + rate + "%), " + getSavedMillis() + "ms saved";
+    }
+
+    // package-protected for JUnit testing
+    static final class CachedMessage implements Message {
+
+        private final long id;
+        private final Level level;
+        private final String path;
+        private final int line;
+        private final int column;
+        private final String text;
+        private final String string;
+
+        CachedMessage(Properties properties, String prefix) {
+            id = Long.parseLong(properties.getProperty(prefix + "id", "0"));
+            level = Level.valueOf(properties.getProperty(prefix + "level"));
+            path = properties.getProperty(prefix + "path");
+            line = Integer.parseInt(properties.getProperty(prefix + "line", "0"));
+            column = Integer.parseInt(properties.getProperty(prefix + "column", "0"));
+            text = properties.getProperty(prefix + "text");
+            string = properties.getProperty(prefix + "string");
+        }
+
+        static void store(Message message, Properties properties, String prefix) {
+            properties.setProperty(prefix + "id", String.valueOf(message.getId()));
+            properties.setProperty(prefix + "level", message.getLevel().name());
+            if (message.getPath() != null) {
+                properties.setProperty(prefix + "path", message.getPath());
+            }
+            properties.setProperty(prefix + "line", String.valueOf(message.getLine()));
+            properties.setProperty(prefix + "column", String.valueOf(message.getColumn()));
+            if (message.getText() != null) {
+                properties.setProperty(prefix + "text", message.getText());
+            }
+            properties.setProperty(prefix + "string", String.valueOf(message));
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public Level getLevel() {
+            return level;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public int getLine() {
+            return line;
+        }
+
+        @Override
+        public int getColumn() {
+            return column;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return string;
+        }
+
+    }
+
+    private static final class Pom {
+
+        private final Map<String, String> parent = new HashMap<String, String>();
+        private final Map<String, String> properties = new HashMap<String, String>();
+        private final List<Map<String, String>> dependencies = new ArrayList<Map<String, String>>();
+        private boolean snapshot;
+
+        private String getParent() {
+            String groupId = parent.get("groupId");
+            String artifactId = parent.get("artifactId");
+            String version = parent.get("version");
+            return groupId != null && artifactId != null && version != null ? groupId + ":" + artifactId + ":" + version : null;
+        }
+
+        /**
+         * The value with the project coordinates and the properties of this pom filled in, or null if it is
+         * missing or refers to anything else.
+         */
+        private String interpolate(String value) {
+            if (value == null) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            int from = 0;
+            int start;
+            while ((start = value.indexOf("${", from)) != -1) {
+                int end = value.indexOf('}', start);
+                if (end == -1) {
+                    return null;
+                }
+                String name = value.substring(start + 2, end);
+                String replacement = properties.get(name);
+                if (replacement == null && name.startsWith("project.")) {
+                    // inherited from the parent unless the project declares its own
+                    replacement = parent.get(name.substring(8));
+                }
+                if (replacement == null || replacement.contains("${")) {
+                    return null;
+                }
+                sb.append(value, from, start).append(replacement);
+                from = end + 1;
+            }
+            return sb.append(value.substring(from)).toString();
+        }
+
+    }
+
+}
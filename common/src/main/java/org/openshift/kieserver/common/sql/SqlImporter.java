@@ -17,29 +17,60 @@
 package org.openshift.kieserver.common.sql;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.naming.Context;
 import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import javax.sql.DataSource;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.openshift.kieserver.common.coder.SumCoder;
+
 /**
+ * Imports the Quartz tables on startup. The import blocks the deployment, since the Quartz scheduler and the
+ * jBPM executor start on their own and cannot be made to wait for the tables. While the database does not
+ * accept connections, the import retries with a doubling backoff, up to the
+ * org.openshift.kieserver.common.sql.retries (attempts), .backoff (first backoff in ms) and .timeout (seconds
+ * overall, 60 by default) system properties. The timeout is capped at 120 seconds, well below the deployment
+ * timeout, so a database that is down fails the import rather than the deployment.
+ * <p>
+ * After an import, the name and SHA-256 checksum of the script are recorded in KIE_SCHEMA_VERSION, so later
+ * starts only need to query that one row. Tables imported before there was a record, or recorded from a different
+ * script, are checked against the script once, then recorded; they are never imported over, and if any of
+ * the script's tables is missing the import fails.
+ *
  * @author fspolti
  */
 
 @Singleton
 @Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class SqlImporter {
 
     private final Logger log = Logger.getLogger(MethodHandles.lookup().lookupClass().getName());
-    private final String LINE_SEPARATOR = System.getProperty("line.separator", "\n");
     private final String DEFAULT_COMMAND_DELIMITER = ";";
     private final String QUARTZ_JNDI = System.getenv("QUARTZ_JNDI");
     // use the DEFAULT if none is passed, it will be overridden on getDatabaseType, if needed.
@@ -48,9 +79,17 @@ public class SqlImporter {
     private Context ctx;
     private String DB_TYPE = null;
     private String SQL_SCRIPT = System.getProperty("jboss.home.dir") + "/bin/";
+    private final int RETRIES = Integer.getInteger("org.openshift.kieserver.common.sql.retries", 10);
+    private final long BACKOFF = Long.getLong("org.openshift.kieserver.common.sql.backoff", 500L);
+    private final long MAX_BACKOFF = 30000L;
+    private final long MAX_TIMEOUT = 120L;
+    private final long TIMEOUT = Math.min(Long.getLong("org.openshift.kieserver.common.sql.timeout", 60L), MAX_TIMEOUT);
+    private final Charset SCRIPT_CHARSET = Charset.forName("UTF-8");
+    private final String SCHEMA_VERSION_TABLE = "KIE_SCHEMA_VERSION";
+    private final Pattern CREATE_TABLE = Pattern.compile("^CREATE\\s+TABLE\\s+([\\w.$]+)", Pattern.CASE_INSENSITIVE);
 
     @PostConstruct
-    public void importSqlFile() throws SQLException {
+    public void importSqlFile() {
 
         if ("".equals(QUARTZ_JNDI) || null == QUARTZ_JNDI) {
             log.info("QUARTZ_JNDI env not found, skipping SqlImporter");
@@ -58,111 +97,286 @@ public class SqlImporter {
             getDatabaseType();
             if (!isEmptyOrNull(DB_TYPE)) {
                 log.info("Starting SqlImporter...");
-                doImport();
+                runImport();
             }
         }
     }
 
+    private void runImport() {
+        try {
+            doImport();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.severe("Interrupted before the script " + SQL_SCRIPT + " was imported");
+        } catch (Exception e) {
+            log.severe("Failed to import the script " + SQL_SCRIPT + ", error message: " + e.getMessage());
+        }
+    }
+
     /**
      * Verifies if the importer needs to run, if needed, start the import task.
      *
      * @throws SQLException for SQL related issues and Exception for any other issue
+     * @returns true if the tables exist afterwards.
      */
-    private void doImport() throws SQLException {
+    private boolean doImport() throws IOException, SQLException, InterruptedException {
+
+        if (!new File(SQL_SCRIPT).exists()) {
+            log.warning("File " + SQL_SCRIPT + " Not found, aborting.");
+            return false;
+        }
+        ByteBuffer script = mapScript();
+        String checksum = getScriptChecksum(script);
 
-        Connection conn = getConnection();
+        Connection conn = getConnectionWithRetry();
 
         try {
 
-            if (tablesExists(conn)) {
-                log.info("Tables already imported, skipping...");
+            // the common case, answered by a single query; autocommit is still on, so a failing query does
+            // not leave the transaction aborted on PostgreSQL
+            boolean versioned = true;
+            String recorded;
+            try {
+                recorded = getSchemaVersion(conn);
+            } catch (SQLException e) {
+                // only a missing table means there is no record; anything else (permissions, say) fails
+                if (!isMissingTable(e) && schemaVersionTableExists(conn)) {
+                    throw e;
+                }
+                versioned = false;
+                recorded = null;
+            }
+
+            if (checksum.equals(recorded)) {
+                log.info("Tables already imported from " + SQL_SCRIPT + ", skipping...");
+            } else if (recorded != null) {
+                List<String> missingTables = getMissingTables(conn, script);
+                if (!missingTables.isEmpty()) {
+                    log.severe("Tables were imported from a different " + SQL_SCRIPT + " (checksum " + recorded + "), missing " + missingTables);
+                    return false;
+                }
+                log.info("Tables were imported from a different " + SQL_SCRIPT + " (checksum " + recorded + "), recording the new schema version...");
+                conn.setAutoCommit(false);
+                updateSchemaVersion(conn, checksum);
+                conn.commit();
+            } else if (tablesExists(conn)) {
+                List<String> missingTables = getMissingTables(conn, script);
+                if (!missingTables.isEmpty()) {
+                    log.severe("Tables partially imported, missing " + missingTables + " from " + SQL_SCRIPT);
+                    return false;
+                }
+                log.info("Tables already imported, recording their schema version...");
+                conn.setAutoCommit(false);
+                recordSchemaVersion(conn, checksum, versioned);
+                conn.commit();
             } else {
                 conn.setAutoCommit(false);
-                scriptImporter(conn);
+                scriptImporter(conn, script, checksum, versioned);
                 log.info("Quartz tables successfully imported from " + SQL_SCRIPT);
             }
+            return true;
 
         } catch (Exception e) {
             log.severe("Failed to import the script " + SQL_SCRIPT + ", error message: " + e.getMessage());
+            return false;
         } finally {
             conn.close();
         }
     }
 
     /**
-     * Import the script
-     *
-     * @throws SQLException for SQL related issues and Exception for any other issue
+     * Verifies if the query failed because the table does not exist, by its SQLState (42S02, or 42P01 on
+     * PostgreSQL and 42704 on DB2) or by ORA-00942 on Oracle.
      */
-    private void scriptImporter(Connection conn) throws IOException, SQLException {
+    private boolean isMissingTable(SQLException e) {
+        String state = e.getSQLState();
+        return "42S02".equals(state) || "42P01".equals(state) || "42704".equals(state) || ("ORACLE".equals(DB_TYPE) && e.getErrorCode() == 942);
+    }
 
-        if (new File(SQL_SCRIPT).exists()) {
-            log.info("Reading SQL file: " + SQL_SCRIPT);
-            Statement stm = conn.createStatement();
-            BufferedReader reader = new BufferedReader(new FileReader(SQL_SCRIPT));
-            StringBuffer command = new StringBuffer();
+    /**
+     * Verifies if the schema version table exists, through the catalog, for when a failing query does not
+     * tell a missing table apart from any other error.
+     */
+    private boolean schemaVersionTableExists(Connection conn) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        String tableName = SCHEMA_VERSION_TABLE;
+        if (md.storesLowerCaseIdentifiers()) {
+            tableName = tableName.toLowerCase();
+        }
+        ResultSet table = md.getTables(null, null, tableName, null);
+        try {
+            return table.next();
+        } finally {
+            table.close();
+        }
+    }
 
+    /**
+     * Returns the checksum recorded for the script, or null if there is none.
+     */
+    private String getSchemaVersion(Connection conn) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("SELECT SCRIPT_CHECKSUM FROM " + SCHEMA_VERSION_TABLE + " WHERE SCRIPT_NAME = ?");
+        try {
+            ps.setString(1, getScriptName());
+            ResultSet rs = ps.executeQuery();
             try {
+                return rs.next() ? rs.getString(1) : null;
+            } finally {
+                rs.close();
+            }
+        } finally {
+            ps.close();
+        }
+    }
 
-                String line;
-                while ((line = reader.readLine()) != null) {
-
-                    String trimmedCommand = line.trim();
-
-                    if (isComment(trimmedCommand)) {
-                        log.info(trimmedCommand);
-                    } else if (commandIsReady(trimmedCommand)) {
-                        try {
-                            command.append(line.substring(0, line.lastIndexOf(CUSTOM_COMMAND_DELIMITER)));
-                        } catch (StringIndexOutOfBoundsException e ) {
-                            // In SQL SERVER quartz script, there are two delimiters, GO and the default ";", if the first fails, rely on the DEFAULT DELIMITER
-                            command.append(line.substring(0, line.lastIndexOf(DEFAULT_COMMAND_DELIMITER)));
-                        }
-                        command.append(LINE_SEPARATOR);
-                        log.info("command to execute: \n" + command);
-
-                        //execute sql
-                        stm.execute(String.valueOf(command));
-                        conn.commit();
-
-                        //clear the previous command
-                        command.setLength(0);
-                    } else if (trimmedCommand.length() > 0) {
-                        command.append(line);
-                        command.append(LINE_SEPARATOR);
-                    }
-                }
-            } catch (Exception e) {
-                conn.rollback();
-                throw new SQLException("Error during import script execution. Error message: " + e.getMessage());
+    /**
+     * Records the script's checksum, creating the schema version table first if needed.
+     * Meant to run in the transaction of the import.
+     */
+    private void recordSchemaVersion(Connection conn, String checksum, boolean versioned) throws SQLException {
+        if (!versioned) {
+            Statement stm = conn.createStatement();
+            try {
+                stm.execute("CREATE TABLE " + SCHEMA_VERSION_TABLE + " (SCRIPT_NAME VARCHAR(255) NOT NULL, SCRIPT_CHECKSUM VARCHAR(64) NOT NULL, PRIMARY KEY (SCRIPT_NAME))");
             } finally {
-                reader.close();
                 stm.close();
             }
-        } else {
-            log.warning("File " + SQL_SCRIPT + " Not found, aborting.");
+        }
+        PreparedStatement ps = conn.prepareStatement("INSERT INTO " + SCHEMA_VERSION_TABLE + " (SCRIPT_NAME, SCRIPT_CHECKSUM) VALUES (?, ?)");
+        try {
+            ps.setString(1, getScriptName());
+            ps.setString(2, checksum);
+            ps.executeUpdate();
+        } finally {
+            ps.close();
+        }
+    }
+
+    private void updateSchemaVersion(Connection conn, String checksum) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement("UPDATE " + SCHEMA_VERSION_TABLE + " SET SCRIPT_CHECKSUM = ? WHERE SCRIPT_NAME = ?");
+        try {
+            ps.setString(1, checksum);
+            ps.setString(2, getScriptName());
+            ps.executeUpdate();
+        } finally {
+            ps.close();
         }
     }
 
     /**
-     * Verifies if the given line from script is a comment or not
-     *
-     * @returns true if the line is a comment and false if is nit a comment.
+     * Returns the tables the script creates that cannot be queried, without going through the catalog.
      */
-    private boolean isComment(String trimmedLine) {
-        return trimmedLine.startsWith("//") || trimmedLine.startsWith("--");
+    private List<String> getMissingTables(Connection conn, ByteBuffer script) throws IOException, SQLException {
+        List<String> missingTables = new ArrayList<String>();
+        SqlScriptTokenizer tokenizer = newTokenizer(script);
+        Statement stm = conn.createStatement();
+        try {
+            String command;
+            while ((command = tokenizer.next()) != null) {
+                Matcher matcher = CREATE_TABLE.matcher(command);
+                if (matcher.find()) {
+                    String table = matcher.group(1);
+                    try {
+                        stm.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+                    } catch (SQLException e) {
+                        missingTables.add(table);
+                    }
+                }
+            }
+        } finally {
+            stm.close();
+        }
+        return missingTables;
+    }
+
+    private String getScriptName() {
+        return new File(SQL_SCRIPT).getName();
     }
 
     /**
-     * Verifies if the entire command line is ready to be executed.
-     *
-     * @returns true when the COMMAND_DELIMITER is found or false if the delimiter is not found.
+     * Maps the script, rather than reading it through a Reader, so it is only copied once, when decoded.
      */
-    private boolean commandIsReady(String trimmedCommand) {
-        return (trimmedCommand.endsWith(DEFAULT_COMMAND_DELIMITER) || trimmedCommand.equals(DEFAULT_COMMAND_DELIMITER)) ||
-                (trimmedCommand.endsWith(CUSTOM_COMMAND_DELIMITER) || trimmedCommand.equals(CUSTOM_COMMAND_DELIMITER));
+    private ByteBuffer mapScript() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(SQL_SCRIPT), StandardOpenOption.READ);
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            channel.close();
+        }
     }
 
+    private SqlScriptTokenizer newTokenizer(ByteBuffer script) throws CharacterCodingException {
+        CharBuffer chars = SCRIPT_CHARSET.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(script.duplicate());
+        return new SqlScriptTokenizer(chars, CUSTOM_COMMAND_DELIMITER, "MYSQL".equals(DB_TYPE));
+    }
+
+    private String getScriptChecksum(ByteBuffer script) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(script.duplicate());
+            return SumCoder.toHex(md.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Import the script, as one batch in a single transaction when the driver takes it.
+     *
+     * @throws SQLException for SQL related issues and Exception for any other issue
+     */
+    private void scriptImporter(Connection conn, ByteBuffer script, String checksum, boolean versioned) throws IOException, SQLException {
+
+        log.info("Reading SQL file: " + SQL_SCRIPT);
+        SqlScriptTokenizer tokenizer = newTokenizer(script);
+        Statement stm = conn.createStatement();
+        List<String> commands = new ArrayList<String>();
+
+        try {
+
+            boolean batch = conn.getMetaData().supportsBatchUpdates();
+            String command;
+            while ((command = tokenizer.next()) != null) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("command to execute: \n" + command);
+                }
+                commands.add(command);
+            }
+
+            if (batch) {
+                try {
+                    for (String c : commands) {
+                        stm.addBatch(c);
+                    }
+                    stm.executeBatch();
+                } catch (SQLFeatureNotSupportedException e) {
+                    // the driver refused the batch itself; any other failure fails the import
+                    log.warning("Batch execution not supported (" + e.getMessage() + "), executing the commands one by one");
+                    conn.rollback();
+                    stm.close();
+                    stm = conn.createStatement();
+                    batch = false;
+                }
+            }
+            if (!batch) {
+                for (String c : commands) {
+                    stm.execute(c);
+                }
+            }
+            recordSchemaVersion(conn, checksum, versioned);
+            conn.commit();
+            log.info(commands.size() + " commands executed" + (batch ? " in one batch" : ""));
+
+        } catch (Exception e) {
+            conn.rollback();
+            throw new SQLException("Error during import script execution. Error message: " + e.getMessage(), e);
+        } finally {
+            stm.close();
+        }
+    }
 
     /**
      * Verifies if the Quartz Tables already exists
@@ -190,15 +404,39 @@ public class SqlImporter {
      * @throws SQLException for SQL related issues and Exception for any other issue
      */
     private Connection getConnection() throws SQLException {
-        try {
-            ctx = new InitialContext();
-            ds = (DataSource) ctx.lookup(QUARTZ_JNDI);
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (ds == null) {
+            try {
+                ctx = new InitialContext();
+                ds = (DataSource) ctx.lookup(QUARTZ_JNDI);
+            } catch (NamingException e) {
+                throw new SQLException("Unable to look up " + QUARTZ_JNDI + ": " + e.getMessage(), e);
+            }
         }
         return ds.getConnection();
     }
 
+    /**
+     * Returns the SQL connection, retrying with a doubling backoff while the database is not accepting them.
+     *
+     * @throws SQLException once the retries or the timeout are used up
+     */
+    private Connection getConnectionWithRetry() throws SQLException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        long backoff = BACKOFF;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return getConnection();
+            } catch (SQLException e) {
+                if (attempt >= RETRIES || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) > deadline) {
+                    throw new SQLException("Unable to connect after " + attempt + " attempts: " + e.getMessage(), e);
+                }
+                log.warning("Unable to connect (attempt " + attempt + " of " + RETRIES + "), retrying in " + backoff + "ms: " + e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
     /**
      * Sets the database type and defines the quartz sql file name.
      * The Database type will be exported by the kieserver-setup.sh
@@ -0,0 +1,175 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.sql;
+
+/**
+ * Splits a SQL script into statements. A statement ends at a ; outside of quotes and comments, or at a line
+ * holding only the custom delimiter (GO for SQL Server) if that is a word. Line comments (--, and // or # at
+ * the start of a line) are dropped, while block comments are kept. # only starts a comment when hashComments
+ * is set, as for MySQL.
+ * <p>
+ * The script is scanned in place, typically a CharBuffer decoded from a mapped file, so the only strings
+ * created are the statements themselves.
+ */
+final class SqlScriptTokenizer {
+
+    private static final char DELIMITER = ';';
+
+    private final CharSequence script;
+    private final String wordDelimiter;
+    private final boolean hashComments;
+    private final StringBuilder statement = new StringBuilder();
+    private int position = 0;
+    private boolean lineStart = true;
+    // the quote character of the literal or identifier still open, if any
+    private char quote = 0;
+    private boolean blockComment = false;
+
+    SqlScriptTokenizer(CharSequence script, String delimiter, boolean hashComments) {
+        this.script = script;
+        this.wordDelimiter = delimiter != null && !delimiter.trim().isEmpty() && Character.isLetter(delimiter.trim().charAt(0)) ? delimiter.trim() : null;
+        this.hashComments = hashComments;
+    }
+
+    /**
+     * Returns the next statement, without its delimiter, or null at the end of the script.
+     */
+    String next() {
+        int length = script.length();
+        while (position < length) {
+            if (lineStart && quote == 0 && !blockComment) {
+                int end = lineEnd(position);
+                int start = position;
+                while (start < end && Character.isWhitespace(script.charAt(start))) {
+                    start++;
+                }
+                int trimmedEnd = end;
+                while (trimmedEnd > start && Character.isWhitespace(script.charAt(trimmedEnd - 1))) {
+                    trimmedEnd--;
+                }
+                if (startsWith(start, trimmedEnd, "//") || (hashComments && startsWith(start, trimmedEnd, "#"))) {
+                    position = end;
+                    continue;
+                }
+                if (wordDelimiter != null && equalsIgnoreCase(start, trimmedEnd, wordDelimiter)) {
+                    position = end;
+                    String s = finish();
+                    if (s != null) {
+                        return s;
+                    }
+                    continue;
+                }
+            }
+            lineStart = false;
+            char c = script.charAt(position++);
+            char n = position < length ? script.charAt(position) : 0;
+            if (c == '\n') {
+                lineStart = true;
+                if (statement.length() > 0) {
+                    statement.append(c);
+                }
+                continue;
+            }
+            if (blockComment) {
+                if (c == '*' && n == '/') {
+                    blockComment = false;
+                    statement.append(c);
+                    c = script.charAt(position++);
+                }
+            } else if (quote != 0) {
+                // a doubled quote is an escaped one, and is kept as a pair
+                if (c == quote) {
+                    if (n == quote) {
+                        statement.append(c);
+                        position++;
+                    } else {
+                        quote = 0;
+                    }
+                }
+            } else if (c == '\r') {
+                continue;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '/' && n == '*') {
+                blockComment = true;
+                statement.append(c);
+                c = script.charAt(position++);
+            } else if ((c == '-' && n == '-') || (hashComments && c == '#')) {
+                // up to the line end, which is kept
+                position = lineEnd(position);
+                continue;
+            } else if (c == DELIMITER) {
+                String s = finish();
+                if (s != null) {
+                    return s;
+                }
+                continue;
+            }
+            statement.append(c);
+        }
+        return finish();
+    }
+
+    private int lineEnd(int from) {
+        int length = script.length();
+        for (int i=from; i < length; i++) {
+            if (script.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private boolean startsWith(int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i=0; i < prefix.length(); i++) {
+            if (script.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i=0; i < s.length(); i++) {
+            if (Character.toUpperCase(script.charAt(start + i)) != Character.toUpperCase(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the trimmed statement, or null if there is none
+    private String finish() {
+        int start = 0;
+        int end = statement.length();
+        while (start < end && Character.isWhitespace(statement.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(statement.charAt(end - 1))) {
+            end--;
+        }
+        String s = start < end ? statement.substring(start, end) : null;
+        statement.setLength(0);
+        return s;
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+    @Test
+    public void testBounded() {
+        BoundedCache<String,String> cache = new BoundedCache<String,String>(3);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v" + i, cache.putIfAbsent("k" + i, "v" + i));
+        }
+        assertEquals(3, cache.size());
+        assertEquals("v9", cache.get("k9"));
+        assertNull(cache.get("k0"));
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        BoundedCache<String,String> cache = new BoundedCache<String,String>(3);
+        assertEquals("v1", cache.putIfAbsent("k", "v1"));
+        assertEquals("v1", cache.putIfAbsent("k", "v2"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPut() {
+        BoundedCache<String,String> cache = new BoundedCache<String,String>(2);
+        cache.put("k1", "v1");
+        cache.put("k1", "v2");
+        assertEquals("v2", cache.get("k1"));
+        assertEquals(1, cache.size());
+        cache.put("k2", "v2");
+        cache.put("k3", "v3");
+        assertEquals(2, cache.size());
+        assertEquals("v3", cache.get("k3"));
+    }
+
+    @Test
+    public void testReferencedSurvives() {
+        BoundedCache<String,String> cache = new BoundedCache<String,String>(3);
+        cache.putIfAbsent("hot", "h");
+        cache.putIfAbsent("k1", "v1");
+        cache.putIfAbsent("k2", "v2");
+        for (int i = 3; i < 10; i++) {
+            assertEquals("h", cache.get("hot"));
+            cache.putIfAbsent("k" + i, "v" + i);
+        }
+        assertEquals("h", cache.get("hot"));
+        assertNull(cache.get("k1"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        BoundedCache<String,String> cache = new BoundedCache<String,String>(0);
+        assertEquals("v", cache.putIfAbsent("k", "v"));
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+
+}
@@ -44,6 +44,25 @@ public class SumCoderTest {
         assertEquals(SHA256_ENCODED, new SHA256().encode(DECODED));
     }
 
+    @Test
+    public void testEncodeReused() throws Exception {
+        final SumCoder coder = new MD5();
+        assertEquals(MD5_ENCODED, coder.encode(DECODED));
+        assertEquals(MD5_ENCODED, coder.encode(DECODED));
+        // another thread gets its own digest
+        final String[] encoded = new String[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                encoded[0] = coder.encode(DECODED);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(MD5_ENCODED, encoded[0]);
+        assertEquals("00ff7f80", SumCoder.toHex(new byte[]{0, -1, 127, -128}));
+    }
+
     @Test
     public void testDecode() {
         try {
@@ -18,6 +18,7 @@ package org.openshift.kieserver.common.id;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -37,4 +38,22 @@ public class ConversationIdTest {
         }
     }
 
+    @Test
+    public void testGetContainerIdCached() {
+        if (ConversationId.isSupported()) {
+            assertEquals("myContainerId", ConversationId.getContainerId(HEADER));
+            int cached = ConversationId.getCachedContainerIdCount();
+            assertEquals("myContainerId", ConversationId.getContainerId(HEADER));
+            assertEquals(cached, ConversationId.getCachedContainerIdCount());
+            for (int i=0; i < ConversationId.CONTAINER_ID_CACHE_SIZE + 10; i++) {
+                String header = HEADER.replace("myContainerId", "myContainerId" + i);
+                assertEquals("myContainerId" + i, ConversationId.getContainerId(header));
+            }
+            assertTrue(ConversationId.getCachedContainerIdCount() <= ConversationId.CONTAINER_ID_CACHE_SIZE);
+        } else {
+            assertNull(ConversationId.getContainerId(HEADER));
+        }
+        assertNull(ConversationId.getContainerId(null));
+    }
+
 }
@@ -166,4 +166,36 @@ public class ReleaseIdTest {
         assertEquals(ReleaseIdComparator.USAGE, new String(err.toByteArray(), "UTF-8"));
     }
 
+    @Test
+    public void testComparableMixedWithPlain() {
+        ComparableReleaseId comparable = new ComparableReleaseId("com.test:foo:2.0.0.Alpha1");
+        assertEquals(0, comparable.compareTo(gav4));
+        assertTrue(comparable.compareTo(gav2) > 0);
+        assertTrue(comparable.compareTo(new ComparableReleaseId(gav5)) < 0);
+        assertTrue(new ComparableReleaseId(gav5).compareTo(comparable) > 0);
+    }
+
+    @Test
+    public void testFirstSortedKeepsOriginals() {
+        List<ReleaseId> list = newUnsortedList();
+        assertSame(gav0, ReleaseIdComparator.getEarliest(list));
+        for (int i=0; i < list.size(); i++) {
+            assertFalse(list.get(i) instanceof ComparableReleaseId);
+        }
+        assertSame(gav1, list.get(1));
+        assertSame(gav7, list.get(7));
+    }
+
+    @Test
+    public void testValueOfInterned() {
+        ComparableReleaseId releaseId = ComparableReleaseId.valueOf("com.test:interned:1.0");
+        assertSame(releaseId, ComparableReleaseId.valueOf("com.test:interned:1.0"));
+        assertSame(releaseId, ComparableReleaseId.valueOf("com.test", "interned", "1.0"));
+        assertEquals(new ComparableReleaseId("com.test:interned:1.0"), releaseId);
+        for (int i=0; i < ComparableReleaseId.INTERNED_CACHE_SIZE * 2; i++) {
+            ComparableReleaseId.valueOf("com.test:interned:" + i);
+        }
+        assertTrue(ComparableReleaseId.getInternedCount() <= ComparableReleaseId.INTERNED_CACHE_SIZE);
+    }
+
 }
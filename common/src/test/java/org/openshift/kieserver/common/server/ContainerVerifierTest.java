@@ -16,6 +16,7 @@
 package org.openshift.kieserver.common.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
@@ -33,4 +34,21 @@ public class ContainerVerifierTest {
         assertEquals(ContainerVerifier.USAGE, new String(err.toByteArray(), "UTF-8"));
     }
 
+    @Test
+    public void testMainInvalidParallel() throws Exception {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        boolean verified = ContainerVerifier.main(new String[]{"--parallel=0", "g:a:v"}, null, new PrintStream(err, true));
+        assertFalse(verified);
+        assertEquals(ContainerVerifier.USAGE, new String(err.toByteArray(), "UTF-8"));
+    }
+
+    @Test
+    public void testParallelism() {
+        assertEquals(Runtime.getRuntime().availableProcessors(), ContainerVerifier.getParallelism("--parallel"));
+        assertEquals(4, ContainerVerifier.getParallelism("--parallel=4"));
+        assertEquals(-1, ContainerVerifier.getParallelism("--parallel=-4"));
+        assertEquals(-1, ContainerVerifier.getParallelism("--parallel=four"));
+        assertEquals(-1, ContainerVerifier.getParallelism("--parallelism"));
+    }
+
 }
@@ -0,0 +1,143 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.openshift.kieserver.common.server.DeploymentCache.IdType.JOB;
+import static org.openshift.kieserver.common.server.DeploymentCache.IdType.PROCESS_INSTANCE;
+import static org.openshift.kieserver.common.server.DeploymentCache.IdType.TASK_INSTANCE;
+
+import org.junit.Test;
+import org.openshift.kieserver.common.server.DeploymentCache.IdType;
+
+public class DeploymentCacheTest {
+
+    private static class CountingLoader implements DeploymentCache.Loader {
+        private int loads = 0;
+        @Override
+        public String load(IdType idType, long id) {
+            loads++;
+            return id > 0 ? idType.name() + "-" + id : null;
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        DeploymentCache cache = new DeploymentCache(10, 60000, 60000);
+        CountingLoader loader = new CountingLoader();
+        assertEquals("PROCESS_INSTANCE-1", cache.getDeploymentId(PROCESS_INSTANCE, 1, loader));
+        assertEquals("PROCESS_INSTANCE-1", cache.getDeploymentId(PROCESS_INSTANCE, 1, loader));
+        // same id, different kind
+        assertEquals("TASK_INSTANCE-1", cache.getDeploymentId(TASK_INSTANCE, 1, loader));
+        assertEquals(2, loader.loads);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testNegativeResults() {
+        DeploymentCache cache = new DeploymentCache(10, 60000, 60000);
+        CountingLoader loader = new CountingLoader();
+        assertNull(cache.getDeploymentId(JOB, -1, loader));
+        assertNull(cache.getDeploymentId(JOB, -1, loader));
+        assertEquals(1, loader.loads);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        DeploymentCache cache = new DeploymentCache(2, 60000, 60000);
+        CountingLoader loader = new CountingLoader();
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        cache.getDeploymentId(PROCESS_INSTANCE, 2, loader);
+        // touch 1 so 2 becomes the eldest
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        cache.getDeploymentId(PROCESS_INSTANCE, 3, loader);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        assertEquals(3, loader.loads);
+        cache.getDeploymentId(PROCESS_INSTANCE, 2, loader);
+        assertEquals(4, loader.loads);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        DeploymentCache cache = new DeploymentCache(10, 1, 1);
+        CountingLoader loader = new CountingLoader();
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        Thread.sleep(10);
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        assertEquals(2, loader.loads);
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testDisabled() {
+        DeploymentCache cache = new DeploymentCache(0, 60000, 60000);
+        CountingLoader loader = new CountingLoader();
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        cache.getDeploymentId(PROCESS_INSTANCE, 1, loader);
+        assertEquals(2, loader.loads);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBatch() {
+        DeploymentCache cache = new DeploymentCache(10, 60000, 60000);
+        CountingLoader loader = new CountingLoader();
+        cache.getDeploymentId(PROCESS_INSTANCE, 5, loader);
+        // highest ids first, duplicates and non-resolving ids dropped
+        LongStringMap deploymentIds = cache.getDeploymentIds(PROCESS_INSTANCE, new long[] {3, 5, -1, 5, 4}, 2, loader);
+        assertEquals(2, deploymentIds.size());
+        assertEquals("PROCESS_INSTANCE-5", deploymentIds.get(5));
+        assertEquals("PROCESS_INSTANCE-4", deploymentIds.get(4));
+        assertNull(deploymentIds.get(3));
+        // 5 was cached and 3 never needed loading
+        assertEquals(2, loader.loads);
+        deploymentIds = cache.getDeploymentIds(PROCESS_INSTANCE, new long[] {-2, -1, 3}, 10, loader);
+        assertEquals(1, deploymentIds.size());
+        assertEquals(5, loader.loads);
+        assertEquals(0, cache.getDeploymentIds(PROCESS_INSTANCE, null, 1, loader).size());
+    }
+
+    @Test
+    public void testLongStringMap() {
+        LongStringMap map = new LongStringMap();
+        for (long id=0; id < 100; id++) {
+            assertNull(map.put(id * 7, String.valueOf(id)));
+        }
+        assertEquals("3", map.put(21, "three"));
+        assertEquals(100, map.size());
+        assertEquals("three", map.get(21));
+        assertEquals("99", map.get(693));
+        assertNull(map.get(1));
+        assertEquals(693, map.keys()[99]);
+    }
+
+    @Test
+    public void testEnvironment() {
+        assertEquals(10, DeploymentCache.toLong("SIZE", null, 10));
+        assertEquals(10, DeploymentCache.toLong("SIZE", " ", 10));
+        assertEquals(20, DeploymentCache.toLong("SIZE", " 20 ", 10));
+        assertEquals(0, DeploymentCache.toLong("SIZE", "0", 10));
+        assertEquals(10, DeploymentCache.toLong("SIZE", "20s", 10));
+        assertEquals(10, DeploymentCache.toLong("SIZE", "-1", 10));
+        assertEquals(10, DeploymentCache.toLong("SIZE", "99999999999", 10));
+    }
+
+}
@@ -55,6 +55,25 @@ public class ServerConfigTest {
         assertEquals("c2", serverConfig.getDefaultDeploymentIdForAlias("c2"));
     }
 
+    @Test
+    public void testLookups() {
+        ServerConfig serverConfig = newServerConfig(true);
+        String deploymentIdC1 = CODER.encode("c1=g1:a1:v1");
+        assertTrue(serverConfig.hasDeploymentId(deploymentIdC1));
+        assertTrue(serverConfig.hasDeploymentId(DEPLOYMENT_ID_C2_V2));
+        assertFalse(serverConfig.hasDeploymentId("c2"));
+        assertFalse(serverConfig.hasDeploymentId(null));
+        assertEquals(DEPLOYMENT_ID_C2_V2, serverConfig.getDeploymentIdForContainerConfig("c2=g2:a2:v2"));
+        assertEquals("c2=g2:a2:v2.1", serverConfig.getContainerConfigForDeploymentId(DEPLOYMENT_ID_C2_V21));
+        assertEquals("c2", serverConfig.getContainerAliasForDeploymentId(DEPLOYMENT_ID_C2_V2));
+        assertNull(serverConfig.getDefaultDeploymentIdForAlias("c3"));
+        serverConfig = newServerConfig(false);
+        assertTrue(serverConfig.hasDeploymentId("c2"));
+        // only the default (latest) version is kept when redirect is not enabled
+        assertNull(serverConfig.getDeploymentIdForContainerConfig("c2=g2:a2:v2"));
+        assertEquals("c2", serverConfig.getDeploymentIdForContainerConfig("c2=g2:a2:v2.1"));
+    }
+
     @Test
     public void testEmptyDeployment() {
         ServerConfig serverConfig = ServerConfig.getInstance();
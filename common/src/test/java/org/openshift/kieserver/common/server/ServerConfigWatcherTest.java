@@ -0,0 +1,83 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class ServerConfigWatcherTest {
+
+    @Test
+    public void testContainerDeployment() {
+        assertEquals("c1=g1:a1:v1|c2=g2:a2:v2", ServerConfigWatcher.toContainerDeployment("# comment\nc1=g1:a1:v1\r\n\n  c2=g2:a2:v2  \n"));
+        assertEquals("c1=g1:a1:v1|c2=g2:a2:v2", ServerConfigWatcher.toContainerDeployment("c1=g1:a1:v1|c2=g2:a2:v2"));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        ServerConfig original = ServerConfig.getInstance();
+        File file = File.createTempFile(getClass().getSimpleName(), ".txt");
+        try {
+            ServerConfigWatcher watcher = new ServerConfigWatcher(file, 1000);
+            Files.write(file.toPath(), "c1=g1:a1:v1".getBytes(Charset.forName("UTF-8")));
+            assertTrue(watcher.poll());
+            ServerConfig reloaded = ServerConfig.getInstance();
+            assertNotSame(original, reloaded);
+            assertTrue(reloaded.getDefaultDeploymentIdForAlias("c1") != null);
+            assertEquals(original.isContainerRedirectEnabled(), reloaded.isContainerRedirectEnabled());
+            // unchanged file
+            assertFalse(watcher.poll());
+            assertSame(reloaded, ServerConfig.reload(" c1=g1:a1:v1 "));
+        } finally {
+            file.delete();
+            ServerConfig.reload(original.getContainerDeployment());
+        }
+    }
+
+    @Test
+    public void testStartStop() {
+        // no KIE_CONTAINER_DEPLOYMENT_FILE in the test environment
+        ServerConfigWatcher.start();
+        ServerConfigWatcher.start();
+        assertFalse(ServerConfigWatcher.isStarted());
+        ServerConfigWatcher.stop();
+        ServerConfigWatcher.stop();
+        // unbalanced stop is harmless
+        ServerConfigWatcher.stop();
+        assertFalse(ServerConfigWatcher.isStarted());
+    }
+
+    @Test
+    public void testIntervalSeconds() {
+        assertEquals(ServerConfigWatcher.DEFAULT_INTERVAL_SECONDS, ServerConfigWatcher.toIntervalSeconds(null));
+        assertEquals(ServerConfigWatcher.DEFAULT_INTERVAL_SECONDS, ServerConfigWatcher.toIntervalSeconds(" "));
+        assertEquals(30, ServerConfigWatcher.toIntervalSeconds(" 30 "));
+        assertEquals(ServerConfigWatcher.DEFAULT_INTERVAL_SECONDS, ServerConfigWatcher.toIntervalSeconds("30s"));
+        // disabled
+        assertEquals(0, ServerConfigWatcher.toIntervalSeconds("0"));
+        assertEquals(-1, ServerConfigWatcher.toIntervalSeconds("-1"));
+    }
+
+}
@@ -0,0 +1,219 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.builder.Message;
+import org.openshift.kieserver.common.server.ContainerVerifier.Verification;
+import org.openshift.kieserver.common.server.VerificationCache.CachedMessage;
+
+public class VerificationCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File root;
+    private File localRepository;
+    private VerificationCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        localRepository = new File(root, "repository");
+        cache = new VerificationCache(new File(root, "cache"), localRepository, "6.5.0.Final");
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        String gav = "com.test:cached:1.0";
+        install("com/test/cached/1.0/cached-1.0", "jar content", "<project/>");
+        assertNull(cache.get(gav));
+        Properties properties = new Properties();
+        properties.setProperty("m.level", "WARNING");
+        properties.setProperty("m.text", "unused rule");
+        properties.setProperty("m.string", "[WARNING] unused rule");
+        List<Message> messages = new ArrayList<Message>();
+        messages.add(new CachedMessage(properties, "m."));
+        cache.put(new Verification(gav, messages, null, 5000, false));
+        Verification cached = cache.get(gav);
+        assertNotNull(cached);
+        assertTrue(cached.isCached());
+        assertTrue(cached.isVerified());
+        assertEquals(1, cached.getMessages().size());
+        assertEquals(Message.Level.WARNING, cached.getMessages().get(0).getLevel());
+        assertEquals("[WARNING] unused rule", cached.getMessages().get(0).toString());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getSavedMillis() > 0);
+        // a rebuilt kjar no longer matches
+        install("com/test/cached/1.0/cached-1.0", "other jar content", "<project/>");
+        assertNull(cache.get(gav));
+    }
+
+    @Test
+    public void testNotCached() throws IOException {
+        install("com/test/snapshot/1.0-SNAPSHOT/snapshot-1.0-SNAPSHOT", "jar content", "<project/>");
+        assertNull(cache.checksum("com.test:snapshot:1.0-SNAPSHOT"));
+        install("com/test/dependent/1.0/dependent-1.0", "jar content", "<project><version>2.0-SNAPSHOT</version></project>");
+        assertNull(cache.checksum("com.test:dependent:1.0"));
+        assertNull(cache.checksum("com.test:missing:1.0"));
+        install("com/test/ranged/1.0/ranged-1.0", "jar content", "<project><dependencies><dependency><version>[1.0,)</version></dependency></dependencies></project>");
+        assertNull(cache.checksum("com.test:ranged:1.0"));
+        install("com/test/property/1.0/property-1.0", "jar content", "<project><properties><kie.version>7.0.0-SNAPSHOT</kie.version></properties></project>");
+        assertNull(cache.checksum("com.test:property:1.0"));
+        // an unknown engine version disables the cache
+        assertNull(new VerificationCache(new File(root, "cache"), localRepository, null).checksum("com.test:cached:1.0"));
+        String gav = "com.test:failed:1.0";
+        install("com/test/failed/1.0/failed-1.0", "jar content", "<project/>");
+        cache.put(new Verification(gav, Collections.<Message>emptyList(), new IOException(), 5000, false));
+        assertNull(cache.get(gav));
+    }
+
+    @Test
+    public void testSnapshotInComment() throws IOException {
+        install("com/test/commented/1.0/commented-1.0", "jar content",
+                "<project><!-- was 1.0-SNAPSHOT --><version>1.0</version><description>no SNAPSHOT here</description></project>");
+        assertNotNull(cache.checksum("com.test:commented:1.0"));
+    }
+
+    @Test
+    public void testEngineVersion() throws IOException {
+        install("com/test/engine/1.0/engine-1.0", "jar content", "<project/>");
+        VerificationCache other = new VerificationCache(new File(root, "cache"), localRepository, "7.0.0.Final");
+        assertNotNull(cache.checksum("com.test:engine:1.0"));
+        assertNotEquals(cache.checksum("com.test:engine:1.0"), other.checksum("com.test:engine:1.0"));
+    }
+
+    @Test
+    public void testParent() throws IOException {
+        String parent = "<parent><groupId>com.test</groupId><artifactId>parent</artifactId><version>%s</version></parent>";
+        install("com/test/child/1.0/child-1.0", "jar content", "<project>" + String.format(parent, "1.0") + "</project>");
+        // the parent must be there to know what the child depends on
+        assertNull(cache.checksum("com.test:child:1.0"));
+        install("com/test/parent/1.0/parent-1.0", null, "<project><version>1.0</version></project>");
+        String checksum = cache.checksum("com.test:child:1.0");
+        assertNotNull(checksum);
+        install("com/test/parent/1.0/parent-1.0", null, "<project><version>1.0</version><dependencies/></project>");
+        assertNotEquals(checksum, cache.checksum("com.test:child:1.0"));
+        install("com/test/parent/1.0/parent-1.0", null, "<project><properties><v>2.0-SNAPSHOT</v></properties></project>");
+        assertNull(cache.checksum("com.test:child:1.0"));
+        install("com/test/child/2.0/child-2.0", "jar content", "<project>" + String.format(parent, "2.0-SNAPSHOT") + "</project>");
+        install("com/test/parent/2.0-SNAPSHOT/parent-2.0-SNAPSHOT", null, "<project/>");
+        assertNull(cache.checksum("com.test:child:2.0"));
+    }
+
+    @Test
+    public void testDependencies() throws IOException {
+        String dependency = "<dependency><groupId>com.test</groupId><artifactId>%s</artifactId><version>%s</version>%s</dependency>";
+        String pom = "<project><groupId>com.test</groupId><version>1.0</version><properties><lib.version>1.0</lib.version></properties><dependencies>"
+                + String.format(dependency, "lib", "${lib.version}", "")
+                + String.format(dependency, "bom", "${project.version}", "<type>pom</type>")
+                + String.format(dependency, "junit", "4.12", "<scope>test</scope>")
+                + "</dependencies></project>";
+        install("com/test/app/1.0/app-1.0", "jar content", pom);
+        // what the kjar is verified against must be in the local repository
+        assertNull(cache.checksum("com.test:app:1.0"));
+        install("com/test/lib/1.0/lib-1.0", "lib content", "<project/>");
+        install("com/test/bom/1.0/bom-1.0", null, "<project/>");
+        String checksum = cache.checksum("com.test:app:1.0");
+        assertNotNull(checksum);
+        // a dependency changes without the kjar changing
+        install("com/test/lib/1.0/lib-1.0", "other lib content", "<project/>");
+        assertNotEquals(checksum, cache.checksum("com.test:app:1.0"));
+        // and so does a transitive one
+        checksum = cache.checksum("com.test:app:1.0");
+        install("com/test/lib/1.0/lib-1.0", "other lib content", "<project><dependencies>" + String.format(dependency, "base", "2.0", "") + "</dependencies></project>");
+        assertNull(cache.checksum("com.test:app:1.0"));
+        install("com/test/base/2.0/base-2.0", "base content", "<project/>");
+        assertNotNull(cache.checksum("com.test:app:1.0"));
+        assertNotEquals(checksum, cache.checksum("com.test:app:1.0"));
+        install("com/test/base/2.0/base-2.0", "base content", "<project><dependencies>" + String.format(dependency, "range", "[1.0,)", "") + "</dependencies></project>");
+        assertNull(cache.checksum("com.test:app:1.0"));
+        // versions that are managed or defined elsewhere are not known here
+        install("com/test/managed/1.0/managed-1.0", "jar content", "<project><dependencies><dependency><groupId>com.test</groupId><artifactId>lib</artifactId></dependency></dependencies></project>");
+        assertNull(cache.checksum("com.test:managed:1.0"));
+        install("com/test/inherited/1.0/inherited-1.0", "jar content", "<project><dependencies>" + String.format(dependency, "lib", "${lib.version}", "") + "</dependencies></project>");
+        assertNull(cache.checksum("com.test:inherited:1.0"));
+        install("com/test/classified/1.0/classified-1.0", "jar content", "<project><dependencies>" + String.format(dependency, "bom", "1.0", "<classifier>tests</classifier>") + "</dependencies></project>");
+        assertNull(cache.checksum("com.test:classified:1.0"));
+        // exclusions are read past, and cycles end
+        install("com/test/cycle/1.0/cycle-1.0", "jar content", "<project><dependencies>"
+                + String.format(dependency, "cycle", "1.0", "<exclusions><exclusion><groupId>*</groupId><artifactId>*</artifactId></exclusion></exclusions>")
+                + "</dependencies></project>");
+        assertNotNull(cache.checksum("com.test:cycle:1.0"));
+    }
+
+    @Test
+    public void testLocalRepository() throws IOException {
+        String userHome = new File(root, "home").getPath();
+        assertEquals(new File(userHome, ".m2/repository"), VerificationCache.getLocalRepository(null, userHome, null));
+        File global = new File(root, "maven/conf/settings.xml");
+        global.getParentFile().mkdirs();
+        Files.write(global.toPath(), "<settings><localRepository>/opt/global-repo</localRepository></settings>".getBytes(UTF_8));
+        assertEquals(new File("/opt/global-repo"), VerificationCache.getLocalRepository(null, userHome, new File(root, "maven").getPath()));
+        File user = new File(userHome, ".m2/settings.xml");
+        user.getParentFile().mkdirs();
+        Files.write(user.toPath(), "<settings><localRepository>${user.home}/repo</localRepository></settings>".getBytes(UTF_8));
+        assertEquals(new File(userHome, "repo"), VerificationCache.getLocalRepository(null, userHome, new File(root, "maven").getPath()));
+        File custom = new File(root, "custom-settings.xml");
+        Files.write(custom.toPath(), "<settings><mirrors/><localRepository> /opt/custom-repo </localRepository></settings>".getBytes(UTF_8));
+        assertEquals(new File("/opt/custom-repo"), VerificationCache.getLocalRepository(custom.getPath(), userHome, null));
+        // a custom settings file without one falls back to the global settings
+        Files.write(custom.toPath(), "<settings/>".getBytes(UTF_8));
+        assertEquals(new File("/opt/global-repo"), VerificationCache.getLocalRepository(custom.getPath(), userHome, new File(root, "maven").getPath()));
+    }
+
+    private void install(String path, String jar, String pom) throws IOException {
+        File file = new File(localRepository, path);
+        file.getParentFile().mkdirs();
+        if (jar != null) {
+            Files.write(new File(file.getPath() + ".jar").toPath(), jar.getBytes(UTF_8));
+        }
+        Files.write(new File(file.getPath() + ".pom").toPath(), pom.getBytes(UTF_8));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,214 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Just enough of a JDBC database for the importer: it knows which tables were created, keeps the rows of
+ * the schema version table, and records every statement run, commit and rollback in order, and every call
+ * to the catalog.
+ */
+final class MockDatabase {
+
+    private static final Pattern CREATE_TABLE = Pattern.compile("^CREATE\\s+TABLE\\s+([\\w.$]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT_FROM = Pattern.compile("^SELECT\\s+.*\\s+FROM\\s+([\\w.$]+)", Pattern.CASE_INSENSITIVE);
+
+    final List<String> executed = new ArrayList<String>();
+    final Set<String> tables = new HashSet<String>();
+    final Map<String,String> versions = new HashMap<String,String>();
+    final List<String> metadata = new ArrayList<String>();
+    boolean supportsBatchUpdates = true;
+    SQLException batchFailure;
+    SQLException queryFailure;
+    int batches;
+
+    Connection getConnection() {
+        return proxy(Connection.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("createStatement".equals(name)) {
+                    return newStatement();
+                } else if ("prepareStatement".equals(name)) {
+                    return newPreparedStatement((String)args[0]);
+                } else if ("getMetaData".equals(name)) {
+                    return newMetaData();
+                } else if ("commit".equals(name)) {
+                    executed.add("COMMIT");
+                } else if ("rollback".equals(name)) {
+                    executed.add("ROLLBACK");
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private Statement newStatement() {
+        final List<String> batch = new ArrayList<String>();
+        return proxy(Statement.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("execute".equals(name)) {
+                    execute((String)args[0]);
+                    return false;
+                } else if ("executeQuery".equals(name)) {
+                    return query((String)args[0], Arrays.<String>asList());
+                } else if ("addBatch".equals(name)) {
+                    batch.add((String)args[0]);
+                } else if ("clearBatch".equals(name)) {
+                    batch.clear();
+                } else if ("executeBatch".equals(name)) {
+                    if (batchFailure != null) {
+                        throw batchFailure;
+                    }
+                    batches++;
+                    for (String sql : batch) {
+                        execute(sql);
+                    }
+                    int[] counts = new int[batch.size()];
+                    batch.clear();
+                    return counts;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private PreparedStatement newPreparedStatement(final String sql) {
+        final Map<Integer,String> parameters = new HashMap<Integer,String>();
+        return proxy(PreparedStatement.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("setString".equals(name)) {
+                    parameters.put((Integer)args[0], (String)args[1]);
+                } else if ("executeQuery".equals(name)) {
+                    String checksum = versions.get(parameters.get(1));
+                    return query(sql, checksum != null ? Arrays.asList(checksum) : Arrays.<String>asList());
+                } else if ("executeUpdate".equals(name)) {
+                    executed.add(sql);
+                    if (sql.startsWith("INSERT")) {
+                        if (versions.containsKey(parameters.get(1))) {
+                            throw new SQLException("duplicate key " + parameters.get(1), "23000");
+                        }
+                        versions.put(parameters.get(1), parameters.get(2));
+                    } else if (sql.startsWith("UPDATE")) {
+                        versions.put(parameters.get(2), parameters.get(1));
+                    }
+                    return 1;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private DatabaseMetaData newMetaData() {
+        return proxy(DatabaseMetaData.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                metadata.add(name);
+                if ("supportsBatchUpdates".equals(name)) {
+                    return supportsBatchUpdates;
+                } else if ("getTables".equals(name)) {
+                    String table = ((String)args[2]).toUpperCase();
+                    return resultSet(tables.contains(table) ? Arrays.asList(table) : Arrays.<String>asList());
+                } else if ("storesLowerCaseIdentifiers".equals(name)) {
+                    return false;
+                } else if ("storesUpperCaseIdentifiers".equals(name)) {
+                    return true;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private void execute(String sql) {
+        executed.add(sql);
+        Matcher matcher = CREATE_TABLE.matcher(sql);
+        if (matcher.find()) {
+            tables.add(matcher.group(1).toUpperCase());
+        }
+    }
+
+    private ResultSet query(String sql, List<String> rows) throws SQLException {
+        if (queryFailure != null) {
+            throw queryFailure;
+        }
+        Matcher matcher = SELECT_FROM.matcher(sql);
+        if (matcher.find() && !tables.contains(matcher.group(1).toUpperCase())) {
+            throw new SQLException("Table " + matcher.group(1) + " not found", "42S02");
+        }
+        return resultSet(rows);
+    }
+
+    private static ResultSet resultSet(List<String> rows) {
+        final Iterator<String> it = rows.iterator();
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private String current;
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("next".equals(name)) {
+                    current = it.hasNext() ? it.next() : null;
+                    return current != null;
+                } else if ("getString".equals(name)) {
+                    return current;
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type.isPrimitive() && type != void.class) {
+            throw new UnsupportedOperationException(method.getName());
+        }
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(MockDatabase.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+}
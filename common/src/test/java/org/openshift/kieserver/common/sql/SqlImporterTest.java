@@ -1,15 +1,35 @@
 package org.openshift.kieserver.common.sql;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.openshift.kieserver.common.coder.SumCoder;
 
 public class SqlImporterTest {
 
+    private static final String SCRIPT = "CREATE TABLE QRTZ_JOB_DETAILS (NAME VARCHAR(200));\nCREATE TABLE QRTZ_TRIGGERS (NAME VARCHAR(200));\n";
+    private static final String CREATE_JOB_DETAILS = "CREATE TABLE QRTZ_JOB_DETAILS (NAME VARCHAR(200))";
+    private static final String CREATE_TRIGGERS = "CREATE TABLE QRTZ_TRIGGERS (NAME VARCHAR(200))";
+
 
     @Before
     public void prepareEnv() {
@@ -89,6 +109,165 @@ public class SqlImporterTest {
         Assert.assertFalse((Boolean) method.invoke(importer, "postgresql"));
     }
 
+    @Test
+    public void testWithoutQuartzJndi() {
+        Assume.assumeTrue(System.getenv("QUARTZ_JNDI") == null);
+        // nothing to import, and nothing to connect to
+        new SqlImporter().importSqlFile();
+    }
+
+    @Test
+    public void testBatchImport() throws Exception {
+        MockDatabase db = new MockDatabase();
+        importScript(new SqlImporter(), db);
+        Assert.assertEquals(1, db.batches);
+        Assert.assertEquals(Arrays.asList(CREATE_JOB_DETAILS, CREATE_TRIGGERS), db.executed.subList(0, 2));
+        Assert.assertEquals("COMMIT", db.executed.get(db.executed.size() - 1));
+        Assert.assertTrue(db.versions.containsValue("abc"));
+    }
+
+    @Test
+    public void testBatchNotSupported() throws Exception {
+        MockDatabase db = new MockDatabase();
+        db.supportsBatchUpdates = false;
+        importScript(new SqlImporter(), db);
+        Assert.assertEquals(0, db.batches);
+        Assert.assertEquals(Arrays.asList(CREATE_JOB_DETAILS, CREATE_TRIGGERS), db.executed.subList(0, 2));
+        Assert.assertFalse(db.executed.contains("ROLLBACK"));
+    }
+
+    @Test
+    public void testBatchRejectedFallsBack() throws Exception {
+        MockDatabase db = new MockDatabase();
+        db.batchFailure = new SQLFeatureNotSupportedException("no DDL in batches");
+        importScript(new SqlImporter(), db);
+        // rolled back before running the commands one by one
+        Assert.assertEquals(Arrays.asList("ROLLBACK", CREATE_JOB_DETAILS, CREATE_TRIGGERS), db.executed.subList(0, 3));
+        Assert.assertEquals("COMMIT", db.executed.get(db.executed.size() - 1));
+    }
+
+    @Test
+    public void testBatchFailureDoesNotFallBack() throws Exception {
+        MockDatabase db = new MockDatabase();
+        db.batchFailure = new BatchUpdateException("syntax error", new int[0]);
+        try {
+            importScript(new SqlImporter(), db);
+            Assert.fail("expected an SQLException");
+        } catch (SQLException e) {
+            Assert.assertEquals(Arrays.asList("ROLLBACK"), db.executed);
+        }
+    }
+
+    @Test
+    public void testChecksumMatch() throws Exception {
+        MockDatabase db = newImportedDatabase();
+        db.versions.put("quartz.sql", new SumCoder.SHA256().encode(SCRIPT));
+        Assert.assertTrue(doImport(db));
+        Assert.assertEquals(Arrays.<String>asList(), db.executed);
+        // answered by the version query alone, without going through the catalog
+        Assert.assertFalse(db.metadata.contains("getTables"));
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        MockDatabase db = newImportedDatabase();
+        db.versions.put("quartz.sql", "old");
+        Assert.assertTrue(doImport(db));
+        // recorded again, but not imported over
+        Assert.assertEquals(new SumCoder.SHA256().encode(SCRIPT), db.versions.get("quartz.sql"));
+        Assert.assertFalse(db.executed.contains(CREATE_JOB_DETAILS));
+    }
+
+    @Test
+    public void testChecksumMismatchWithMissingTables() throws Exception {
+        MockDatabase db = newImportedDatabase();
+        db.tables.remove("QRTZ_TRIGGERS");
+        db.versions.put("quartz.sql", "old");
+        Assert.assertFalse(doImport(db));
+        Assert.assertEquals("old", db.versions.get("quartz.sql"));
+    }
+
+    @Test
+    public void testTablesWithoutVersion() throws Exception {
+        MockDatabase db = new MockDatabase();
+        db.tables.add("QRTZ_JOB_DETAILS");
+        db.tables.add("QRTZ_TRIGGERS");
+        Assert.assertTrue(doImport(db));
+        Assert.assertTrue(db.tables.contains("KIE_SCHEMA_VERSION"));
+        Assert.assertEquals(new SumCoder.SHA256().encode(SCRIPT), db.versions.get("quartz.sql"));
+        Assert.assertFalse(db.executed.contains(CREATE_JOB_DETAILS));
+        // the missing version table is told by the SQLState, and only the Quartz tables are looked up
+        Assert.assertEquals(Arrays.asList("getTables"), db.metadata);
+    }
+
+    @Test
+    public void testVersionQueryFailure() throws Exception {
+        MockDatabase db = newImportedDatabase();
+        db.queryFailure = new SQLException("permission denied", "42501");
+        Assert.assertFalse(doImport(db));
+        // not taken for a missing schema version table
+        Assert.assertEquals(Arrays.<String>asList(), db.executed);
+        Assert.assertTrue(db.metadata.contains("getTables"));
+    }
+
+    @Test
+    public void testVersionQueryFailureWithoutTable() throws Exception {
+        MockDatabase db = new MockDatabase();
+        // a driver that does not report the SQLState of a missing table
+        db.queryFailure = new SQLException("no such table");
+        Assert.assertTrue(doImport(db));
+        // told by the catalog instead
+        Assert.assertTrue(db.executed.contains(CREATE_JOB_DETAILS));
+        Assert.assertEquals(new SumCoder.SHA256().encode(SCRIPT), db.versions.get("quartz.sql"));
+    }
+
+    private static MockDatabase newImportedDatabase() {
+        MockDatabase db = new MockDatabase();
+        db.tables.add("QRTZ_JOB_DETAILS");
+        db.tables.add("QRTZ_TRIGGERS");
+        db.tables.add("KIE_SCHEMA_VERSION");
+        return db;
+    }
+
+    private static boolean doImport(final MockDatabase db) throws Exception {
+        File dir = Files.createTempDirectory(SqlImporterTest.class.getSimpleName()).toFile();
+        File script = new File(dir, "quartz.sql");
+        Files.write(script.toPath(), SCRIPT.getBytes(Charset.forName("UTF-8")));
+        try {
+            SqlImporter importer = new SqlImporter();
+            setField(importer, "SQL_SCRIPT", script.getPath());
+            setField(importer, "DB_TYPE", "MYSQL");
+            setField(importer, "ds", Proxy.newProxyInstance(SqlImporterTest.class.getClassLoader(), new Class<?>[] { DataSource.class }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    return "getConnection".equals(method.getName()) ? db.getConnection() : null;
+                }
+            }));
+            Method method = SqlImporter.class.getDeclaredMethod("doImport");
+            method.setAccessible(true);
+            return (Boolean) method.invoke(importer);
+        } finally {
+            script.delete();
+            dir.delete();
+        }
+    }
+
+    private static void setField(SqlImporter importer, String name, Object value) throws Exception {
+        Field field = SqlImporter.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(importer, value);
+    }
+
+    private static void importScript(SqlImporter importer, MockDatabase db) throws Exception {
+        Method method = SqlImporter.class.getDeclaredMethod("scriptImporter", Connection.class, ByteBuffer.class, String.class, boolean.class);
+        method.setAccessible(true);
+        try {
+            method.invoke(importer, db.getConnection(), ByteBuffer.wrap(SCRIPT.getBytes(Charset.forName("UTF-8"))), "abc", false);
+        } catch (InvocationTargetException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
     private String getFieldValue(SqlImporter importer) throws NoSuchMethodException, NoSuchFieldException, IllegalAccessException, InvocationTargetException {
         Field field = SqlImporter.class.getDeclaredField("SQL_SCRIPT");
         field.setAccessible(true);
@@ -99,4 +278,4 @@ public class SqlImporterTest {
 
         return (String) field.get(importer);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.common.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SqlScriptTokenizerTest {
+
+    private static List<String> tokenize(String script, String delimiter, boolean hashComments) {
+        List<String> statements = new ArrayList<String>();
+        SqlScriptTokenizer tokenizer = new SqlScriptTokenizer(CharBuffer.wrap(script), delimiter, hashComments);
+        String statement;
+        while ((statement = tokenizer.next()) != null) {
+            statements.add(statement);
+        }
+        return statements;
+    }
+
+    @Test
+    public void testDelimiters() {
+        List<String> statements = tokenize("-- drop first\nDROP TABLE a;\n\nCREATE TABLE a (\n  id INT -- the id; really\n);INSERT INTO a VALUES (1);\n", ";", false);
+        assertEquals(3, statements.size());
+        assertEquals("DROP TABLE a", statements.get(0));
+        assertEquals("CREATE TABLE a (\n  id INT \n)", statements.get(1));
+        assertEquals("INSERT INTO a VALUES (1)", statements.get(2));
+    }
+
+    @Test
+    public void testQuotes() {
+        List<String> statements = tokenize("INSERT INTO a VALUES ('x;y', 'it''s -- not a comment');\nCREATE TABLE \"b;c\" (id INT)", ";", false);
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO a VALUES ('x;y', 'it''s -- not a comment')", statements.get(0));
+        assertEquals("CREATE TABLE \"b;c\" (id INT)", statements.get(1));
+    }
+
+    @Test
+    public void testComments() {
+        List<String> statements = tokenize("# you'll need this;\n// and this\nCREATE TABLE a /* ; */ (id INT); # trailing\n", ";", true);
+        assertEquals(1, statements.size());
+        assertEquals("CREATE TABLE a /* ; */ (id INT)", statements.get(0));
+        // # is not a comment elsewhere
+        assertEquals("SELECT '#'", tokenize("SELECT '#';", ";", false).get(0));
+    }
+
+    @Test
+    public void testSqlServer() {
+        List<String> statements = tokenize("CREATE TABLE a (id INT)\nGO\n\nCREATE TABLE b (go_id INT)\ngo\nDELETE FROM b;\n", "GO", false);
+        assertEquals(3, statements.size());
+        assertEquals("CREATE TABLE a (id INT)", statements.get(0));
+        assertEquals("CREATE TABLE b (go_id INT)", statements.get(1));
+        assertEquals("DELETE FROM b", statements.get(2));
+    }
+
+    @Test
+    public void testLineEnds() {
+        List<String> statements = tokenize("CREATE TABLE a (\r\n  id INT\r\n);\r\nGO\r\nINSERT INTO a VALUES ('x\r\ny')", "GO", false);
+        assertEquals(2, statements.size());
+        assertEquals("CREATE TABLE a (\n  id INT\n)", statements.get(0));
+        assertEquals("INSERT INTO a VALUES ('x\r\ny')", statements.get(1));
+    }
+
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.kie.server.api.marshalling.MarshallingFormat;
+
+/**
+ * Rewrites the container ids of a marshalled CommandScript without unmarshalling it.
+ * <p>
+ * Only the commands RedirectInterceptor would change are touched (call-container, get-container-info,
+ * get-scanner-info, and descriptor-command at its ServiceMethod container index); everything else is
+ * copied through. Whenever the payload is not shaped as expected, {@link #rewrite(String, String)}
+ * returns null and the caller falls back to the full unmarshall/marshall round trip.
+ */
+abstract class CommandScriptRewriter {
+
+    enum CommandType {
+        CONTAINER, DESCRIPTOR, OTHER
+    }
+
+    private static final String COMMANDS_PACKAGE = "org.kie.server.api.commands.";
+    private static final Map<String, CommandType> COMMAND_TYPES;
+    static {
+        Map<String, CommandType> commandTypes = new HashMap<String, CommandType>();
+        putCommandType(commandTypes, "call-container", "CallContainerCommand", CommandType.CONTAINER);
+        putCommandType(commandTypes, "get-container-info", "GetContainerInfoCommand", CommandType.CONTAINER);
+        putCommandType(commandTypes, "get-scanner-info", "GetScannerInfoCommand", CommandType.CONTAINER);
+        putCommandType(commandTypes, "descriptor-command", "DescriptorCommand", CommandType.DESCRIPTOR);
+        putCommandType(commandTypes, "create-container", "CreateContainerCommand", CommandType.OTHER);
+        putCommandType(commandTypes, "dispose-container", "DisposeContainerCommand", CommandType.OTHER);
+        putCommandType(commandTypes, "get-server-info", "GetServerInfoCommand", CommandType.OTHER);
+        putCommandType(commandTypes, "list-containers", "ListContainersCommand", CommandType.OTHER);
+        putCommandType(commandTypes, "update-release-id", "UpdateReleaseIdCommand", CommandType.OTHER);
+        putCommandType(commandTypes, "update-scanner", "UpdateScannerCommand", CommandType.OTHER);
+        COMMAND_TYPES = Collections.unmodifiableMap(commandTypes);
+    }
+
+    private static void putCommandType(Map<String, CommandType> commandTypes, String name, String simpleName, CommandType commandType) {
+        commandTypes.put(name, commandType);
+        // XStream falls back to class names when there is no alias
+        commandTypes.put(COMMANDS_PACKAGE + simpleName, commandType);
+    }
+
+    static final String COMMANDS = "commands";
+    static final String CONTAINER_ID = "container-id";
+    static final String SERVICE = "service";
+    static final String METHOD = "method";
+    static final String ARGUMENTS = "arguments";
+
+    private final ServiceHelper serviceHelper;
+
+    CommandScriptRewriter(ServiceHelper serviceHelper) {
+        this.serviceHelper = serviceHelper;
+    }
+
+    /**
+     * Returns the rewritten text, the same text instance if no command carries a container id,
+     * or null if the text cannot be streamed.
+     */
+    abstract String rewrite(String text, String containerId);
+
+    static CommandScriptRewriter newRewriter(MarshallingFormat format, ServiceHelper serviceHelper) {
+        if (format != null) {
+            switch (format) {
+                case JSON:
+                    return new JsonCommandScriptRewriter(serviceHelper);
+                case JAXB:
+                    return new XmlCommandScriptRewriter(serviceHelper, false);
+                case XSTREAM:
+                    return new XmlCommandScriptRewriter(serviceHelper, true);
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
+    static CommandType getCommandType(String name) {
+        return COMMAND_TYPES.get(name);
+    }
+
+    /**
+     * The index of the container id argument of a descriptor command, or -1 if it has none.
+     */
+    int getContainerIdIndex(String service, String method) {
+        ServiceMethod sm = serviceHelper.getServiceMethod(service, method);
+        return sm != null ? sm.getContainerIdIndex() : -1;
+    }
+
+    static final class UnsupportedScriptException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedScriptException(String message) {
+            // thrown to bail out to the full round trip, so skip the stack trace
+            super(message, null, false, false);
+        }
+
+    }
+
+}
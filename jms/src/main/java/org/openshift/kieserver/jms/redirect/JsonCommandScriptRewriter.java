@@ -0,0 +1,385 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass JSON scanner which only records the spans of the values to replace, then copies
+ * the text around them. Strings are only decoded for keys, service and method names.
+ */
+final class JsonCommandScriptRewriter extends CommandScriptRewriter {
+
+    JsonCommandScriptRewriter(ServiceHelper serviceHelper) {
+        super(serviceHelper);
+    }
+
+    @Override
+    String rewrite(String text, String containerId) {
+        try {
+            return new Scan(text, containerId).rewrite();
+        } catch (UnsupportedScriptException use) {
+            return null;
+        }
+    }
+
+    private final class Scan {
+
+        private final String text;
+        private final String quotedContainerId;
+        private final List<int[]> spans = new ArrayList<int[]>();
+        private int pos = 0;
+
+        private Scan(String text, String containerId) {
+            this.text = text;
+            this.quotedContainerId = quote(containerId);
+        }
+
+        private String rewrite() throws UnsupportedScriptException {
+            boolean commands = false;
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    if (COMMANDS.equals(key)) {
+                        commands = true;
+                        readCommands();
+                    } else {
+                        skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            skipWhitespace();
+            if (!commands || pos != text.length()) {
+                throw new UnsupportedScriptException("unexpected script");
+            }
+            if (spans.isEmpty()) {
+                return text;
+            }
+            StringBuilder sb = new StringBuilder(text.length() + spans.size() * quotedContainerId.length());
+            int copied = 0;
+            for (int[] span : spans) {
+                sb.append(text, copied, span[0]).append(quotedContainerId);
+                copied = span[1];
+            }
+            sb.append(text, copied, text.length());
+            return sb.toString();
+        }
+
+        private void readCommands() throws UnsupportedScriptException {
+            expect('[');
+            if (consume(']')) {
+                return;
+            }
+            do {
+                // every command is wrapped in an object keyed by its name
+                expect('{');
+                CommandType commandType = getCommandType(readString());
+                if (commandType == null) {
+                    throw new UnsupportedScriptException("unknown command");
+                }
+                expect(':');
+                switch (commandType) {
+                    case CONTAINER:
+                        readContainerCommand();
+                        break;
+                    case DESCRIPTOR:
+                        readDescriptorCommand();
+                        break;
+                    default:
+                        skipValue();
+                        break;
+                }
+                expect('}');
+            } while (consume(','));
+            expect(']');
+        }
+
+        private void readContainerCommand() throws UnsupportedScriptException {
+            int[] span = null;
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    if (CONTAINER_ID.equals(key)) {
+                        span = readScalarSpan(true);
+                    } else {
+                        skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (span == null) {
+                // the id would have to be added
+                throw new UnsupportedScriptException("missing container id");
+            }
+            spans.add(span);
+        }
+
+        private void readDescriptorCommand() throws UnsupportedScriptException {
+            String service = null;
+            String method = null;
+            List<int[]> arguments = null;
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    String key = readString();
+                    expect(':');
+                    if (SERVICE.equals(key)) {
+                        service = readStringOrNull();
+                    } else if (METHOD.equals(key)) {
+                        method = readStringOrNull();
+                    } else if (ARGUMENTS.equals(key)) {
+                        arguments = readArgumentSpans();
+                    } else {
+                        skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            int index = getContainerIdIndex(service, method);
+            if (index > -1) {
+                if (arguments == null) {
+                    throw new UnsupportedScriptException("missing arguments");
+                }
+                if (arguments.size() > index) {
+                    int[] span = arguments.get(index);
+                    if (span == null) {
+                        // wrapped or otherwise structured argument
+                        throw new UnsupportedScriptException("unexpected container id argument");
+                    }
+                    spans.add(span);
+                }
+            }
+        }
+
+        // null entries for arguments which are not plain strings
+        private List<int[]> readArgumentSpans() throws UnsupportedScriptException {
+            skipWhitespace();
+            if (peek() != '[') {
+                skipValue();
+                return null;
+            }
+            List<int[]> arguments = new ArrayList<int[]>();
+            pos++;
+            if (consume(']')) {
+                return arguments;
+            }
+            do {
+                skipWhitespace();
+                if (peek() == '"') {
+                    arguments.add(readScalarSpan(false));
+                } else {
+                    skipValue();
+                    arguments.add(null);
+                }
+            } while (consume(','));
+            expect(']');
+            return arguments;
+        }
+
+        private int[] readScalarSpan(boolean allowNull) throws UnsupportedScriptException {
+            skipWhitespace();
+            int start = pos;
+            if (peek() == '"') {
+                skipString();
+            } else if (allowNull && text.startsWith("null", pos)) {
+                pos += 4;
+            } else {
+                throw new UnsupportedScriptException("unexpected value");
+            }
+            return new int[] {start, pos};
+        }
+
+        private String readStringOrNull() throws UnsupportedScriptException {
+            skipWhitespace();
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            return readString();
+        }
+
+        private String readString() throws UnsupportedScriptException {
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return sb != null ? sb.append(text, start, pos - 1).toString() : text.substring(start, pos - 1);
+                }
+                if (c == '\\') {
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                    }
+                    sb.append(text, start, pos - 1);
+                    sb.append(unescape());
+                    start = pos;
+                }
+            }
+            throw new UnsupportedScriptException("unterminated string");
+        }
+
+        private char unescape() throws UnsupportedScriptException {
+            if (pos >= text.length()) {
+                throw new UnsupportedScriptException("unterminated escape");
+            }
+            char c = text.charAt(pos++);
+            switch (c) {
+                case 'b':
+                    return '\b';
+                case 'f':
+                    return '\f';
+                case 'n':
+                    return '\n';
+                case 'r':
+                    return '\r';
+                case 't':
+                    return '\t';
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw new UnsupportedScriptException("unterminated escape");
+                    }
+                    try {
+                        c = (char)Integer.parseInt(text.substring(pos, pos + 4), 16);
+                    } catch (NumberFormatException nfe) {
+                        throw new UnsupportedScriptException("bad escape");
+                    }
+                    pos += 4;
+                    return c;
+                default:
+                    return c;
+            }
+        }
+
+        private void skipString() throws UnsupportedScriptException {
+            expect('"');
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    pos++;
+                }
+            }
+            throw new UnsupportedScriptException("unterminated string");
+        }
+
+        private void skipValue() throws UnsupportedScriptException {
+            skipWhitespace();
+            char c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    c = peek();
+                    if (c == '"') {
+                        skipString();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                    pos++;
+                } while (depth > 0);
+            } else {
+                int start = pos;
+                while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                    pos++;
+                }
+                if (pos == start) {
+                    throw new UnsupportedScriptException("missing value");
+                }
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                    break;
+                }
+                pos++;
+            }
+        }
+
+        private char peek() throws UnsupportedScriptException {
+            if (pos >= text.length()) {
+                throw new UnsupportedScriptException("unexpected end");
+            }
+            return text.charAt(pos);
+        }
+
+        private boolean consume(char c) throws UnsupportedScriptException {
+            skipWhitespace();
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws UnsupportedScriptException {
+            if (!consume(c)) {
+                throw new UnsupportedScriptException("expected " + c);
+            }
+        }
+
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i=0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+}
@@ -28,11 +28,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PreDestroy;
 import javax.interceptor.AroundInvoke;
 import javax.interceptor.InvocationContext;
 import javax.jms.JMSException;
 import javax.jms.Message;
-import javax.jms.TextMessage;
 
 import org.kie.server.api.commands.CallContainerCommand;
 import org.kie.server.api.commands.CommandScript;
@@ -46,11 +46,12 @@ import org.kie.server.api.marshalling.MarshallingFormat;
 import org.kie.server.api.model.KieServerCommand;
 import org.kie.server.jms.JMSRuntimeException;
 import org.kie.server.services.api.KieContainerInstance;
-import org.kie.server.services.impl.KieServerImpl;
+import org.kie.server.services.api.KieServerRegistry;
 import org.kie.server.services.impl.KieServerLocator;
 import org.openshift.kieserver.common.id.ConversationId;
 import org.openshift.kieserver.common.server.DeploymentHelper;
 import org.openshift.kieserver.common.server.ServerConfig;
+import org.openshift.kieserver.common.server.ServerConfigWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -80,29 +81,61 @@ public class RedirectInterceptor {
         CONVERSATION_ID_PROPERTY_NAME = conversationIdPropertyName;
     }
 
-    private final ServerConfig serverConfig;
     private final boolean containerRedirectEnabled;
     private final Map<MarshallingFormat, Marshaller> marshallers;
+    private final Map<MarshallingFormat, CommandScriptRewriter> rewriters;
     private final ServiceHelper serviceHelper;
     private final DeploymentHelper deploymentHelper;
+    // null means the one of the running KIE Server, looked up when needed
+    private final KieServerRegistry serverRegistry;
 
     public RedirectInterceptor() {
-        serverConfig = ServerConfig.getInstance();
-        containerRedirectEnabled = serverConfig.isContainerRedirectEnabled();
+        this(new DeploymentHelper(), null);
+    }
+
+    // package-protected for benchmarks
+    RedirectInterceptor(DeploymentHelper deploymentHelper, KieServerRegistry serverRegistry) {
+        containerRedirectEnabled = ServerConfig.getInstance().isContainerRedirectEnabled();
         marshallers = new ConcurrentHashMap<MarshallingFormat, Marshaller>();
+        rewriters = new ConcurrentHashMap<MarshallingFormat, CommandScriptRewriter>();
         serviceHelper = new ServiceHelper();
-        deploymentHelper = new DeploymentHelper();
+        this.deploymentHelper = deploymentHelper;
+        this.serverRegistry = serverRegistry;
         if (containerRedirectEnabled) {
             ClassLoader classLoader = CommandScript.class.getClassLoader();
             marshallers.put(XSTREAM, MarshallerFactory.getMarshaller(XSTREAM, classLoader));
             marshallers.put(JAXB, MarshallerFactory.getMarshaller(JAXB, classLoader));
             marshallers.put(JSON, MarshallerFactory.getMarshaller(JSON, classLoader));
+            for (MarshallingFormat format : new MarshallingFormat[]{XSTREAM, JAXB, JSON}) {
+                rewriters.put(format, CommandScriptRewriter.newRewriter(format, serviceHelper));
+            }
+            ServerConfigWatcher.start();
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy(InvocationContext ctx) {
+        try {
+            if (containerRedirectEnabled) {
+                // one start per interceptor instance, so the watcher stops with the last one
+                ServerConfigWatcher.stop();
+            }
+        } finally {
+            try {
+                ctx.proceed();
+            } catch (RuntimeException re) {
+                throw re;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
     }
 
     @AroundInvoke
     public Object doIntercept(InvocationContext ctx) throws Exception {
         if (containerRedirectEnabled && ON_MESSAGE.equals(ctx.getMethod().getName())) {
+            // the same snapshot for the whole message, even if it gets reloaded meanwhile
+            ServerConfig serverConfig = ServerConfig.getInstance();
             Message message = (Message)ctx.getParameters()[0];
             String redirectDeploymentId = null;
             // this is often null for JMS
@@ -111,6 +144,7 @@ public class RedirectInterceptor {
             if (!serverConfig.hasDeploymentId(requestedContainerId)) {
                 String msgCorrId = getCorrelationId(message);
                 MarshallingFormat format = getMarshallingFormat(message, msgCorrId);
+                RedirectMessage redirectMessage = new RedirectMessage(message, msgCorrId, format);
                 String configDeploymentId = serverConfig.getDeploymentIdForContainerConfig(requestedContainerId);
                 if (serverConfig.hasDeploymentId(configDeploymentId)) {
                     redirectDeploymentId = configDeploymentId;
@@ -122,8 +156,8 @@ public class RedirectInterceptor {
                         conversationDeploymentId = null;
                     }
                     String defaultDeploymentId = serverConfig.getDefaultDeploymentIdForAlias(requestedContainerId);
-                    Marshaller marshaller = getMarshaller(format, conversationDeploymentId, defaultDeploymentId);
-                    String commandDeploymentId = getCommandDeploymentId(message, msgCorrId, marshaller, conversationDeploymentId);
+                    Marshaller marshaller = getMarshaller(serverConfig, format, conversationDeploymentId, defaultDeploymentId);
+                    String commandDeploymentId = getCommandDeploymentId(serverConfig, redirectMessage, marshaller, conversationDeploymentId);
                     if (serverConfig.hasDeploymentId(commandDeploymentId)) {
                         redirectDeploymentId = commandDeploymentId;
                     } else if (serverConfig.hasDeploymentId(conversationDeploymentId)) {
@@ -137,33 +171,19 @@ public class RedirectInterceptor {
                         String log = String.format("%s redirecting to %s", ON_MESSAGE, redirectDeploymentId);
                         LOGGER.debug(log);
                     }
-                    boolean resetText = false;
-                    Marshaller marshaller = getMarshaller(format, redirectDeploymentId);
-                    CommandScript script = unmarshallRequest(message, msgCorrId, marshaller);
-                    for (KieServerCommand command : script.getCommands()) {
-                        // not all commands are allowed in OpenShift KIE Server
-                        if (command instanceof CallContainerCommand) {
-                            ((CallContainerCommand)command).setContainerId(redirectDeploymentId);
-                            resetText = true;
-                        } else if (command instanceof DescriptorCommand) {
-                            DescriptorCommand dc = (DescriptorCommand)command;
-                            ServiceMethod sm = serviceHelper.getServiceMethod(dc);
-                            if (sm != null && sm.setContainerId(dc, redirectDeploymentId)) {
-                                resetText = true;
-                            }
-                        } else if (command instanceof GetContainerInfoCommand) {
-                            ((GetContainerInfoCommand)command).setContainerId(redirectDeploymentId);
-                            resetText = true;
-                        } else if (command instanceof GetScannerInfoCommand) {
-                            ((GetScannerInfoCommand)command).setContainerId(redirectDeploymentId);
-                            resetText = true;
+                    // patch the container ids in place if the payload can be streamed
+                    CommandScriptRewriter rewriter = rewriters.get(format);
+                    String text = rewriter != null ? rewriter.rewrite(redirectMessage.getText(), redirectDeploymentId) : null;
+                    if (text != null) {
+                        redirectMessage.setText(text);
+                    } else {
+                        // reuses the script parsed above when the redirect target has the same marshaller
+                        Marshaller marshaller = getMarshaller(serverConfig, format, redirectDeploymentId);
+                        CommandScript script = redirectMessage.getScript(marshaller);
+                        if (setContainerIds(serviceHelper, script, redirectDeploymentId)) {
+                            redirectMessage.setChanged();
                         }
-                    }
-                    if (resetText) {
-                        String text = marshallRequest(script, msgCorrId, marshaller);
-                        // body is read-only unless you clear it first
-                        message.clearBody();
-                        ((TextMessage)message).setText(text);
+                        redirectMessage.write();
                     }
                 }
             }
@@ -190,10 +210,38 @@ public class RedirectInterceptor {
         return ctx.proceed();
     }
 
-    private String getCommandDeploymentId(Message message, String msgCorrId, Marshaller marshaller, String conversationDeploymentId) {
+    /**
+     * Sets the container ids of the script's commands, returning true if any was set.
+     * package-protected for JUnit testing (the reference for CommandScriptRewriter)
+     */
+    static boolean setContainerIds(ServiceHelper serviceHelper, CommandScript script, String containerId) {
+        boolean changed = false;
+        for (KieServerCommand command : script.getCommands()) {
+            // not all commands are allowed in OpenShift KIE Server
+            if (command instanceof CallContainerCommand) {
+                ((CallContainerCommand)command).setContainerId(containerId);
+                changed = true;
+            } else if (command instanceof DescriptorCommand) {
+                DescriptorCommand dc = (DescriptorCommand)command;
+                ServiceMethod sm = serviceHelper.getServiceMethod(dc);
+                if (sm != null && sm.setContainerId(dc, containerId)) {
+                    changed = true;
+                }
+            } else if (command instanceof GetContainerInfoCommand) {
+                ((GetContainerInfoCommand)command).setContainerId(containerId);
+                changed = true;
+            } else if (command instanceof GetScannerInfoCommand) {
+                ((GetScannerInfoCommand)command).setContainerId(containerId);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private String getCommandDeploymentId(ServerConfig serverConfig, RedirectMessage redirectMessage, Marshaller marshaller, String conversationDeploymentId) {
         boolean found = false;
         String commandDeploymentId = null;
-        CommandScript script = unmarshallRequest(message, msgCorrId, marshaller);
+        CommandScript script = redirectMessage.getScript(marshaller);
         for (KieServerCommand command : script.getCommands()) {
             if (command instanceof DescriptorCommand) {
                 DescriptorCommand dc = (DescriptorCommand)command;
@@ -321,11 +369,11 @@ public class RedirectInterceptor {
         return format;
     }
 
-    private Marshaller getMarshaller(MarshallingFormat format, String... deploymentIds) {
+    private Marshaller getMarshaller(ServerConfig serverConfig, MarshallingFormat format, String... deploymentIds) {
         for (String deploymentId : deploymentIds) {
             if (deploymentId != null && !deploymentId.isEmpty() && serverConfig.hasDeploymentId(deploymentId)) {
-                KieServerImpl kieServer = KieServerLocator.getInstance();
-                KieContainerInstance kieContainerInstance = kieServer.getServerRegistry().getContainer(deploymentId);
+                KieServerRegistry registry = serverRegistry != null ? serverRegistry : KieServerLocator.getInstance().getServerRegistry();
+                KieContainerInstance kieContainerInstance = registry.getContainer(deploymentId);
                 if (kieContainerInstance != null && kieContainerInstance.getKieContainer() != null) {
                     return kieContainerInstance.getMarshaller(format);
                 }
@@ -334,30 +382,4 @@ public class RedirectInterceptor {
         return marshallers.get(format);
     }
 
-    private CommandScript unmarshallRequest(Message message, String msgCorrId, Marshaller marshaller) {
-        CommandScript cmdMsg = null;
-        try {
-            String msgStrContent = ((TextMessage)message).getText();
-            cmdMsg = marshaller.unmarshall(msgStrContent, CommandScript.class);
-        } catch (JMSException jmse) {
-            String errMsg = "Unable to read information from message " + msgCorrId + ".";
-            throw new JMSRuntimeException(errMsg, jmse);
-        } catch (Exception e) {
-            String errMsg = "Unable to unmarshall request to " + CommandScript.class.getSimpleName() + " [msg id: " + msgCorrId + "].";
-            throw new JMSRuntimeException(errMsg, e);
-        }
-        return cmdMsg;
-    }
-
-    private String marshallRequest(CommandScript cmdMsg, String msgId, Marshaller marshaller) {
-        String msgStrContent = null;
-        try {
-            msgStrContent = marshaller.marshall(cmdMsg);
-        } catch (Exception e) {
-            String errMsg = "Unable to marshall request from " + CommandScript.class.getSimpleName() + " [msg id: " + msgId + "].";
-            throw new JMSRuntimeException(errMsg, e);
-        }
-        return msgStrContent;
-    }
-
 }
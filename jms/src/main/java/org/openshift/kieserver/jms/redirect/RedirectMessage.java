@@ -0,0 +1,140 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+
+import org.kie.server.api.commands.CommandScript;
+import org.kie.server.api.marshalling.Marshaller;
+import org.kie.server.api.marshalling.MarshallingFormat;
+import org.kie.server.jms.JMSRuntimeException;
+
+/**
+ * Per-message parsing state for {@link RedirectInterceptor}.
+ * <p>
+ * The body is read once, and the {@link CommandScript} is unmarshalled at most once per marshaller:
+ * a script parsed for resolving the deployment is reused for rewriting the container ids, as long as
+ * the redirect target hands back the same marshaller. A different marshaller (which carries a different
+ * kjar class loader) gets its own parse, so custom types are bound to the right classes. The script is
+ * only marshalled back into the message if one of its commands was changed.
+ */
+final class RedirectMessage {
+
+    private final Message message;
+    private final String msgCorrId;
+    private final MarshallingFormat format;
+    private String text;
+    private CommandScript script;
+    private Marshaller scriptMarshaller;
+    private boolean changed = false;
+
+    RedirectMessage(Message message, String msgCorrId, MarshallingFormat format) {
+        this.message = message;
+        this.msgCorrId = msgCorrId;
+        this.format = format;
+    }
+
+    Message getMessage() {
+        return message;
+    }
+
+    String getCorrelationId() {
+        return msgCorrId;
+    }
+
+    MarshallingFormat getFormat() {
+        return format;
+    }
+
+    String getText() {
+        if (text == null) {
+            try {
+                text = ((TextMessage)message).getText();
+            } catch (JMSException jmse) {
+                String errMsg = "Unable to read information from message " + msgCorrId + ".";
+                throw new JMSRuntimeException(errMsg, jmse);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Replaces the message body, unless it is the very text already there.
+     */
+    void setText(String newText) throws JMSException {
+        if (newText == getText()) {
+            return;
+        }
+        // body is read-only unless you clear it first
+        message.clearBody();
+        ((TextMessage)message).setText(newText);
+        text = newText;
+        script = null;
+        scriptMarshaller = null;
+        changed = false;
+    }
+
+    CommandScript getScript(Marshaller marshaller) {
+        if (script == null || scriptMarshaller != marshaller) {
+            if (changed) {
+                // never drop changes already made to the current script
+                throw new IllegalStateException("script already changed with another marshaller [msg id: " + msgCorrId + "]");
+            }
+            try {
+                script = marshaller.unmarshall(getText(), CommandScript.class);
+            } catch (Exception e) {
+                String errMsg = "Unable to unmarshall request to " + CommandScript.class.getSimpleName() + " [msg id: " + msgCorrId + "].";
+                throw new JMSRuntimeException(errMsg, e);
+            }
+            scriptMarshaller = marshaller;
+        }
+        return script;
+    }
+
+    void setChanged() {
+        changed = true;
+    }
+
+    boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Marshalls the script back into the message body, if it was changed.
+     */
+    void write() throws JMSException {
+        if (!changed) {
+            return;
+        }
+        String msgStrContent = null;
+        try {
+            msgStrContent = scriptMarshaller.marshall(script);
+        } catch (Exception e) {
+            String errMsg = "Unable to marshall request from " + CommandScript.class.getSimpleName() + " [msg id: " + msgCorrId + "].";
+            throw new JMSRuntimeException(errMsg, e);
+        }
+        changed = false;
+        // keeps the parsed script, which matches the new text
+        CommandScript keep = script;
+        Marshaller keepMarshaller = scriptMarshaller;
+        setText(msgStrContent);
+        script = keep;
+        scriptMarshaller = keepMarshaller;
+    }
+
+}
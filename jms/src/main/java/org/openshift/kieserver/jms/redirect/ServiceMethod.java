@@ -16,6 +16,7 @@
 package org.openshift.kieserver.jms.redirect;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.kie.server.api.commands.DescriptorCommand;
@@ -55,6 +56,11 @@ public final class ServiceMethod {
         this.jobId = jobId;
     }
 
+    // package-protected for CommandScriptRewriter
+    int getContainerIdIndex() {
+        return containerId;
+    }
+
     public String getContainerId(DescriptorCommand dc) {
         return getString(dc, containerId);
     }
@@ -67,7 +73,7 @@ public final class ServiceMethod {
         return getLong(dc, processInstanceId);
     }
 
-    public List<Long> getProcessInstanceIds(DescriptorCommand dc) {
+    public long[] getProcessInstanceIds(DescriptorCommand dc) {
         return getLongs(dc, processInstanceIds);
     }
 
@@ -96,17 +102,19 @@ public final class ServiceMethod {
         return toLong(getArgument(dc, i));
     }
 
-    private List<Long> getLongs(DescriptorCommand dc, int i) {
+    private long[] getLongs(DescriptorCommand dc, int i) {
         Object arg = getArgument(dc, i);
         if (arg instanceof List) {
-            List<Long> longs = new ArrayList<Long>();
-            for (Object o : (List<?>)arg) {
+            List<?> list = (List<?>)arg;
+            long[] longs = new long[list.size()];
+            int n = 0;
+            for (Object o : list) {
                 Long l = toLong(o);
                 if (l != null) {
-                    longs.add(l);
+                    longs[n++] = l.longValue();
                 }
             }
-            return longs;
+            return n < longs.length ? Arrays.copyOf(longs, n) : longs;
         }
         return null;
     }
@@ -0,0 +1,272 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * StAX event copy for the JAXB and XStream formats. Each command element is buffered on its own,
+ * since the service and method of a descriptor command are needed to find its container id argument.
+ * <p>
+ * JAXB writes the arguments as repeated <code>arguments</code> elements, while XStream writes one
+ * <code>arguments</code> element holding an element per argument.
+ */
+final class XmlCommandScriptRewriter extends CommandScriptRewriter {
+
+    private static final String SCRIPT = "script";
+    private static final String SCRIPT_CLASS = "org.kie.server.api.commands.CommandScript";
+    private static final String LOOKUP = "lookup";
+    // XStream field name when there is no alias
+    private static final String CONTAINER_ID_FIELD = "containerId";
+    // keeps CDATA sections as they are with the JDK parser
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private final boolean xstream;
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory;
+    private final XMLEventFactory eventFactory;
+
+    XmlCommandScriptRewriter(ServiceHelper serviceHelper, boolean xstream) {
+        super(serviceHelper);
+        this.xstream = xstream;
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        if (inputFactory.isPropertySupported(REPORT_CDATA)) {
+            inputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+        }
+        outputFactory = XMLOutputFactory.newInstance();
+        eventFactory = XMLEventFactory.newInstance();
+    }
+
+    @Override
+    String rewrite(String text, String containerId) {
+        XMLEventReader reader = null;
+        try {
+            reader = inputFactory.createXMLEventReader(new StringReader(text));
+            StringWriter out = new StringWriter(text.length() + containerId.length());
+            XMLEventWriter writer = outputFactory.createXMLEventWriter(out);
+            boolean changed = false;
+            int depth = 0;
+            boolean inCommands = false;
+            boolean declared = text.startsWith("<?xml");
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                if (event.isStartDocument() && !declared) {
+                    // the reader reports one even without an xml declaration
+                    continue;
+                } else if (event.isStartElement()) {
+                    String name = event.asStartElement().getName().getLocalPart();
+                    if (depth == 0) {
+                        if (!SCRIPT.equals(name) && !SCRIPT_CLASS.equals(name)) {
+                            throw new UnsupportedScriptException("unexpected root");
+                        }
+                    } else if (depth == 1 && !inCommands && COMMANDS.equals(name)) {
+                        inCommands = true;
+                    } else if (depth == 1 && !inCommands && LOOKUP.equals(name)) {
+                        write(writer, readElement(reader, event));
+                        continue;
+                    } else if (depth == 1 || (depth == 2 && inCommands)) {
+                        CommandType commandType = getCommandType(name);
+                        if (commandType == null) {
+                            throw new UnsupportedScriptException("unknown command");
+                        }
+                        List<XMLEvent> command = readElement(reader, event);
+                        if (commandType == CommandType.CONTAINER) {
+                            rewriteContainerCommand(command, containerId);
+                            changed = true;
+                        } else if (commandType == CommandType.DESCRIPTOR) {
+                            changed |= rewriteDescriptorCommand(command, containerId);
+                        }
+                        write(writer, command);
+                        continue;
+                    } else {
+                        throw new UnsupportedScriptException("unexpected element");
+                    }
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                    if (depth == 1) {
+                        inCommands = false;
+                    }
+                }
+                writer.add(event);
+            }
+            writer.close();
+            return changed ? out.toString() : text;
+        } catch (XMLStreamException xmlse) {
+            return null;
+        } catch (UnsupportedScriptException use) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException xmlse) {
+                    // no-op
+                }
+            }
+        }
+    }
+
+    private void rewriteContainerCommand(List<XMLEvent> command, String containerId) throws UnsupportedScriptException {
+        StartElement start = command.get(0).asStartElement();
+        QName attributeName = new QName(CONTAINER_ID);
+        if (start.getAttributeByName(attributeName) != null) {
+            List<Attribute> attributes = new ArrayList<Attribute>();
+            Iterator<?> it = start.getAttributes();
+            while (it.hasNext()) {
+                Attribute attribute = (Attribute)it.next();
+                if (attributeName.equals(attribute.getName())) {
+                    attribute = eventFactory.createAttribute(attributeName, containerId);
+                }
+                attributes.add(attribute);
+            }
+            command.set(0, eventFactory.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces()));
+            return;
+        }
+        for (int i : getChildren(command, 0)) {
+            String name = command.get(i).asStartElement().getName().getLocalPart();
+            if (CONTAINER_ID.equals(name) || (xstream && CONTAINER_ID_FIELD.equals(name))) {
+                setText(command, i, containerId);
+                return;
+            }
+        }
+        // the id would have to be added
+        throw new UnsupportedScriptException("missing container id");
+    }
+
+    private boolean rewriteDescriptorCommand(List<XMLEvent> command, String containerId) throws UnsupportedScriptException {
+        String service = null;
+        String method = null;
+        List<Integer> arguments = null;
+        for (int i : getChildren(command, 0)) {
+            String name = command.get(i).asStartElement().getName().getLocalPart();
+            if (SERVICE.equals(name)) {
+                service = getText(command, i);
+            } else if (METHOD.equals(name)) {
+                method = getText(command, i);
+            } else if (ARGUMENTS.equals(name)) {
+                if (xstream) {
+                    arguments = getChildren(command, i);
+                } else {
+                    if (arguments == null) {
+                        arguments = new ArrayList<Integer>();
+                    }
+                    arguments.add(i);
+                }
+            }
+        }
+        int index = getContainerIdIndex(service, method);
+        if (index > -1) {
+            if (arguments == null) {
+                throw new UnsupportedScriptException("missing arguments");
+            }
+            if (arguments.size() > index) {
+                setText(command, arguments.get(index), containerId);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the element's own start event and all its descendants, through its end event
+    private List<XMLEvent> readElement(XMLEventReader reader, XMLEvent start) throws XMLStreamException {
+        List<XMLEvent> events = new ArrayList<XMLEvent>();
+        events.add(start);
+        int depth = 1;
+        while (depth > 0) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    // indexes of the child start elements of the element starting at parent
+    private List<Integer> getChildren(List<XMLEvent> events, int parent) {
+        List<Integer> children = new ArrayList<Integer>();
+        int depth = 0;
+        for (int i=parent + 1; i < events.size(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                if (depth == 0) {
+                    children.add(i);
+                }
+                depth++;
+            } else if (event.isEndElement()) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        return children;
+    }
+
+    private String getText(List<XMLEvent> events, int element) throws UnsupportedScriptException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=element + 1; !events.get(i).isEndElement(); i++) {
+            XMLEvent event = events.get(i);
+            if (event.isStartElement()) {
+                throw new UnsupportedScriptException("unexpected element content");
+            }
+            if (event.isCharacters()) {
+                sb.append(event.asCharacters().getData());
+            }
+        }
+        return sb.toString();
+    }
+
+    private void setText(List<XMLEvent> events, int element, String text) throws UnsupportedScriptException {
+        int end = element + 1;
+        while (!events.get(end).isEndElement()) {
+            if (events.get(end).isStartElement()) {
+                // wrapped or otherwise structured value
+                throw new UnsupportedScriptException("unexpected element content");
+            }
+            end++;
+        }
+        events.subList(element + 1, end).clear();
+        events.add(element + 1, eventFactory.createCharacters(text));
+    }
+
+    private void write(XMLEventWriter writer, List<XMLEvent> events) throws XMLStreamException {
+        for (XMLEvent event : events) {
+            writer.add(event);
+        }
+    }
+
+}
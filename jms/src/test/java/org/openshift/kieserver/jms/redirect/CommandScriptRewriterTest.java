@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.jms.redirect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.kie.server.api.marshalling.MarshallingFormat.JAXB;
+import static org.kie.server.api.marshalling.MarshallingFormat.JSON;
+import static org.kie.server.api.marshalling.MarshallingFormat.XSTREAM;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.kie.server.api.commands.CallContainerCommand;
+import org.kie.server.api.commands.CommandScript;
+import org.kie.server.api.commands.DescriptorCommand;
+import org.kie.server.api.commands.GetContainerInfoCommand;
+import org.kie.server.api.commands.GetScannerInfoCommand;
+import org.kie.server.api.commands.ListContainersCommand;
+import org.kie.server.api.marshalling.Marshaller;
+import org.kie.server.api.marshalling.MarshallerFactory;
+import org.kie.server.api.marshalling.MarshallingFormat;
+import org.kie.server.api.model.KieServerCommand;
+
+public class CommandScriptRewriterTest {
+
+    private static final ServiceHelper SERVICE_HELPER = new ServiceHelper();
+    private static final MarshallingFormat[] FORMATS = { JSON, JAXB, XSTREAM };
+    // quotes, escapes, markup and non-ascii text, and container ids that must be left alone
+    private static final String PAYLOAD = "{\"container-id\":\"MyId\",\"name\":\"a \\\"quoted\\\" \\\\ b\","
+            + "\"nested\":{\"container-id\":\"MyId\",\"text\":\"<p class='x'>&amp; \u00fc\u00df \u2603 \uD83D\uDE00</p>\"}}";
+
+    @Test
+    public void testJson() {
+        CommandScriptRewriter rewriter = CommandScriptRewriter.newRewriter(JSON, SERVICE_HELPER);
+        String text = "{\"lookup\":null,\"commands\":[ {\"call-container\":{\"payload\":\"{\\\"container-id\\\":\\\"keep\\\"}\",\"container-id\":\"MyId\"}},"
+                + "{\"descriptor-command\":{\"arguments\":[\"MyId\",\"MyProcess\",\"json\"],\"service\":\"ProcessService\",\"method\":\"startProcess\"}} ]}";
+        String expected = "{\"lookup\":null,\"commands\":[ {\"call-container\":{\"payload\":\"{\\\"container-id\\\":\\\"keep\\\"}\",\"container-id\":\"MyId_1\"}},"
+                + "{\"descriptor-command\":{\"arguments\":[\"MyId_1\",\"MyProcess\",\"json\"],\"service\":\"ProcessService\",\"method\":\"startProcess\"}} ]}";
+        assertEquals(expected, rewriter.rewrite(text, "MyId_1"));
+        // nothing to change
+        text = "{\"commands\":[{\"list-containers\":{}}]}";
+        assertSame(text, rewriter.rewrite(text, "MyId_1"));
+        // unknown commands and wrapped container ids fall back
+        assertNull(rewriter.rewrite("{\"commands\":[{\"new-command\":{}}]}", "MyId_1"));
+        assertNull(rewriter.rewrite("{\"commands\":[{\"descriptor-command\":{\"service\":\"ProcessService\",\"method\":\"startProcess\",\"arguments\":[{\"string\":\"MyId\"}]}}]}", "MyId_1"));
+        assertNull(rewriter.rewrite("{\"commands\":[", "MyId_1"));
+    }
+
+    @Test
+    public void testJaxb() {
+        CommandScriptRewriter rewriter = CommandScriptRewriter.newRewriter(JAXB, SERVICE_HELPER);
+        String text = "<script><call-container container-id=\"MyId\"><payload><![CDATA[<container-id>keep</container-id>]]></payload></call-container>"
+                + "<descriptor-command><service>ProcessService</service><method>startProcess</method>"
+                + "<arguments>MyId</arguments><arguments>MyProcess</arguments></descriptor-command></script>";
+        String rewritten = rewriter.rewrite(text, "MyId_1");
+        assertTrue(rewritten, rewritten.contains("container-id=\"MyId_1\""));
+        assertTrue(rewritten, rewritten.contains("<arguments>MyId_1</arguments><arguments>MyProcess</arguments>"));
+        assertTrue(rewritten, rewritten.contains("<container-id>keep</container-id>"));
+        text = "<script><list-containers/></script>";
+        assertSame(text, rewriter.rewrite(text, "MyId_1"));
+        assertNull(rewriter.rewrite("<other/>", "MyId_1"));
+    }
+
+    @Test
+    public void testXStream() {
+        CommandScriptRewriter rewriter = CommandScriptRewriter.newRewriter(XSTREAM, SERVICE_HELPER);
+        String text = "<script><commands><get-container-info><container-id>MyId</container-id></get-container-info>"
+                + "<descriptor-command><service>ProcessService</service><method>startProcess</method>"
+                + "<arguments><string>MyId</string><string>MyProcess</string></arguments></descriptor-command></commands></script>";
+        String rewritten = rewriter.rewrite(text, "MyId_1");
+        assertTrue(rewritten, rewritten.contains("<container-id>MyId_1</container-id>"));
+        assertTrue(rewritten, rewritten.contains("<arguments><string>MyId_1</string><string>MyProcess</string></arguments>"));
+        // the id would have to be added
+        assertNull(rewriter.rewrite("<script><commands><call-container/></commands></script>", "MyId_1"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (MarshallingFormat format : FORMATS) {
+            assertRoundTrip(format, script(new CallContainerCommand("MyId", PAYLOAD)), true);
+            assertRoundTrip(format, script(new GetContainerInfoCommand("MyId"), new GetScannerInfoCommand("MyId")), true);
+            // only the argument at the ServiceMethod container index is the container id
+            assertRoundTrip(format, script(new DescriptorCommand("ProcessService", "startProcess",
+                    new Object[] {"MyId", "MyId", PAYLOAD, format.name().toLowerCase()})), true);
+            assertRoundTrip(format, script(new ListContainersCommand(),
+                    new DescriptorCommand("ProcessService", "startProcessWithCorrelation", new Object[] {"MyId", "MyProcess", "MyId", PAYLOAD, "json"}),
+                    new CallContainerCommand("MyId", PAYLOAD)), true);
+        }
+    }
+
+    @Test
+    public void testRoundTripUnchanged() {
+        for (MarshallingFormat format : FORMATS) {
+            Marshaller marshaller = getMarshaller(format);
+            String text = marshaller.marshall(script(new ListContainersCommand()));
+            assertSame(text, CommandScriptRewriter.newRewriter(format, SERVICE_HELPER).rewrite(text, "MyId_1"));
+        }
+    }
+
+    @Test
+    public void testJsonFallback() {
+        // a container id argument that is not a plain string
+        assertRoundTrip(JSON, script(new DescriptorCommand("ProcessService", "startProcess", new Object[] {Long.valueOf(1), "MyProcess", "json"})), false);
+    }
+
+    @Test
+    public void testJaxbFallback() {
+        // no container id to replace, it would have to be added
+        assertRoundTrip(JAXB, script(new CallContainerCommand(null, PAYLOAD)), false);
+    }
+
+    @Test
+    public void testXStreamFallback() {
+        assertRoundTrip(XSTREAM, script(new GetContainerInfoCommand(null)), false);
+    }
+
+    /**
+     * Rewrites the marshalled script, and checks the result against the unmarshall, setContainerId and
+     * marshall fallback of RedirectInterceptor.
+     */
+    private static void assertRoundTrip(MarshallingFormat format, CommandScript script, boolean streamed) {
+        Marshaller marshaller = getMarshaller(format);
+        String text = marshaller.marshall(script);
+        String rewritten = CommandScriptRewriter.newRewriter(format, SERVICE_HELPER).rewrite(text, "MyId_1");
+        CommandScript expected = marshaller.unmarshall(text, CommandScript.class);
+        RedirectInterceptor.setContainerIds(SERVICE_HELPER, expected, "MyId_1");
+        if (streamed) {
+            assertNotNull(format + ": " + text, rewritten);
+            String actual = marshaller.marshall(marshaller.unmarshall(rewritten, CommandScript.class));
+            assertEquals(format + ": " + rewritten, marshaller.marshall(expected), actual);
+        } else {
+            assertNull(format + ": " + rewritten, rewritten);
+        }
+    }
+
+    private static Marshaller getMarshaller(MarshallingFormat format) {
+        return MarshallerFactory.getMarshaller(format, CommandScriptRewriterTest.class.getClassLoader());
+    }
+
+    private static CommandScript script(KieServerCommand... commands) {
+        List<KieServerCommand> list = new ArrayList<KieServerCommand>(Arrays.asList(commands));
+        return new CommandScript(list);
+    }
+
+}
@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kie.server.api.model.ReleaseId;
+import org.kie.server.services.impl.KieContainerInstanceImpl;
+import org.openshift.kieserver.common.cache.BoundedCache;
+import org.openshift.kieserver.common.id.ConversationId;
+
+/**
+ * The conversation id handed out for each deployment, built once and reused until the deployment's
+ * container changes. KIE Server 6.5 has no container lifecycle listener to invalidate on, so each entry
+ * remembers the container instance and release id it was built for: a disposed and recreated container
+ * is a new instance, and an updated one resolves another release id, and either makes the entry stale.
+ */
+final class ConversationIdCache {
+
+    static final int MAX_SIZE = 256;
+
+    private static final ConversationIdCache INSTANCE = new ConversationIdCache();
+
+    private final BoundedCache<String,Entry> entries = new BoundedCache<String,Entry>(MAX_SIZE);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    static ConversationIdCache getInstance() {
+        return INSTANCE;
+    }
+
+    String getConversationId(String serverId, String deploymentId, KieContainerInstanceImpl container) {
+        ReleaseId releaseId = container.getResource().getResolvedReleaseId();
+        if (releaseId == null) {
+            releaseId = container.getResource().getReleaseId();
+        }
+        Entry entry = entries.get(deploymentId);
+        if (entry != null && entry.isFor(serverId, container, releaseId)) {
+            hits.incrementAndGet();
+            return entry.conversationId;
+        }
+        misses.incrementAndGet();
+        ConversationId conversationId = ConversationId.from(serverId, deploymentId, releaseId);
+        if (conversationId == null) {
+            return null;
+        }
+        entry = new Entry(serverId, container, releaseId, conversationId.toString());
+        entries.put(deploymentId, entry);
+        return entry.conversationId;
+    }
+
+    // package-protected for JUnit testing
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private static final class Entry {
+
+        private final String serverId;
+        private final KieContainerInstanceImpl container;
+        private final ReleaseId releaseId;
+        private final String conversationId;
+
+        private Entry(String serverId, KieContainerInstanceImpl container, ReleaseId releaseId, String conversationId) {
+            this.serverId = serverId;
+            this.container = container;
+            this.releaseId = releaseId;
+            this.conversationId = conversationId;
+        }
+
+        private boolean isFor(String serverId, KieContainerInstanceImpl container, ReleaseId releaseId) {
+            return this.container == container
+                    && (this.serverId != null ? this.serverId.equals(serverId) : serverId == null)
+                    && (this.releaseId != null ? this.releaseId.equals(releaseId) : releaseId == null);
+        }
+
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.Map;
+
+public final class PathMatch {
+
+    private final PathPattern pathPattern;
+    private final Map<String, String> variables;
+
+    PathMatch(PathPattern pathPattern, Map<String, String> variables) {
+        this.pathPattern = pathPattern;
+        this.variables = variables;
+    }
+
+    public PathPattern getPathPattern() {
+        return pathPattern;
+    }
+
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: pathPattern=[ %s ], variables=[ %s ]", PathMatch.class.getSimpleName(), pathPattern, variables);
+    }
+
+}
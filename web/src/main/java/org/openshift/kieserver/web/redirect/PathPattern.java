@@ -16,15 +16,17 @@
 package org.openshift.kieserver.web.redirect;
 
 import java.io.File;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
@@ -35,12 +37,11 @@ import javax.ws.rs.OPTIONS;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.core.UriBuilder;
 
-import org.jboss.resteasy.plugins.server.servlet.ServletUtil;
 import org.jboss.resteasy.specimpl.PathSegmentImpl;
-import org.jboss.resteasy.spi.ResteasyUriInfo;
 import org.kie.server.api.KieServerEnvironment;
 import org.kie.server.api.rest.RestURI;
 import org.kie.server.remote.rest.common.KieServerApplication;
@@ -61,18 +62,28 @@ public final class PathPattern {
     private static final Class<?>[] JAXRS_METHODS = new Class<?>[] {
             DELETE.class, GET.class, HEAD.class, OPTIONS.class, POST.class, PUT.class
     };
+    // path variables constrained to numbers
+    private static final String[] NUM_VARS = new String[] {JOB_ID, P_INSTANCE_ID, T_INSTANCE_ID, WORK_ITEM_ID};
     private static final String NUM_EXPR = "[0-9]+";
     private static final String ANY_EXPR = "[^/]+";
 
     private final String path;
     private final Pattern pattern;
     private final Map<Integer,String> positions = new LinkedHashMap<Integer,String>();
+    private final int[] varIndexes;
+    private final String[] varNames;
+    private final List<RedirectStrategy> redirectStrategies;
 
     // package-protected for junit testing
     PathPattern(String pathInfo) {
+        this(pathInfo, null);
+    }
+
+    // package-protected for junit testing
+    PathPattern(String pathInfo, Set<String> queryParams) {
         this.path = pathInfo.startsWith("/") ? pathInfo : "/" + pathInfo;
         String regex = this.path;
-        for (String id : new String[]{JOB_ID, P_INSTANCE_ID, T_INSTANCE_ID, WORK_ITEM_ID}) {
+        for (String id : NUM_VARS) {
             regex = regex.replaceAll("\\{" + id + "\\}", NUM_EXPR);
         }
         regex = regex.replaceAll("\\{" + ANY_EXPR + "\\}", ANY_EXPR);
@@ -85,6 +96,15 @@ public final class PathPattern {
                 positions.put(i, undVar.substring(1));
             }
         }
+        varIndexes = new int[positions.size()];
+        varNames = new String[positions.size()];
+        int v = 0;
+        for (Map.Entry<Integer,String> position : positions.entrySet()) {
+            varIndexes[v] = position.getKey();
+            varNames[v] = position.getValue();
+            v++;
+        }
+        redirectStrategies = RedirectStrategy.plan(positions.values(), queryParams);
     }
 
     public boolean matches(String pathInfo) {
@@ -111,16 +131,42 @@ public final class PathPattern {
     }
 
     public Map<String, String> getVariables(HttpServletRequest request) {
-        Map<String, String> reqVars = new LinkedHashMap<String, String>();
         if (matches(request)) {
-            ResteasyUriInfo uriInfo = ServletUtil.extractUriInfo(request, request.getServletPath());
-            List<PathSegment> reqSegs = uriInfo.getPathSegments();
-            for (int i=0; i < reqSegs.size(); i++) {
-                String var = positions.get(i);
-                if (var != null) {
-                    reqVars.put(var, reqSegs.get(i).getPath());
-                }
+            return extractVariables(request);
+        }
+        return new LinkedHashMap<String, String>();
+    }
+
+    // package-protected for PathPatternMatcher, which has already matched the request
+    Map<String, String> extractVariables(HttpServletRequest request) {
+        String pathInfo = request.getPathInfo();
+        return extractVariables(pathInfo.startsWith("/") ? pathInfo : "/" + pathInfo);
+    }
+
+    /*
+     * Slices the variable segments straight out of the path by their '/' offsets, so only the
+     * needed segments become strings. The servlet container has already decoded the path info,
+     * so all that is left to do per segment is drop any matrix parameters, like PathSegment does.
+     * package-protected for junit testing
+     */
+    Map<String, String> extractVariables(String pathInfo) {
+        Map<String, String> reqVars = new LinkedHashMap<String, String>(varIndexes.length * 2);
+        int length = pathInfo.length();
+        int seg = 0;
+        int var = 0;
+        int start = 1;
+        while (var < varIndexes.length && start <= length) {
+            int end = pathInfo.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (seg == varIndexes[var]) {
+                int matrix = pathInfo.indexOf(';', start);
+                reqVars.put(varNames[var], pathInfo.substring(start, matrix > -1 && matrix < end ? matrix : end));
+                var++;
             }
+            seg++;
+            start = end + 1;
         }
         return reqVars;
     }
@@ -130,36 +176,72 @@ public final class PathPattern {
     }
 
     public String buildRedirectPath(HttpServletRequest request, String containerId) {
-        Map<String, String> vars = getVariables(request);
+        return buildRedirectPath(request, getVariables(request), containerId);
+    }
+
+    public String buildRedirectPath(HttpServletRequest request, Map<String, String> variables, String containerId) {
+        Map<String, String> vars = variables;
         if (containerId != null) {
+            vars = new LinkedHashMap<String, String>(variables);
             vars.put(ID, containerId);
         }
         String path = buildPath(vars);
         return request.getServletPath() + path;
     }
 
+    // package-protected for PathPatternMatcher
+    static boolean isNumericVariable(String var) {
+        for (String id : NUM_VARS) {
+            if (id.equals(var)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The strategies worth trying for requests matching this path, in priority order.
+     */
+    public List<RedirectStrategy> getRedirectStrategies() {
+        return redirectStrategies;
+    }
+
+    // package-protected for PathPatternMatcher
+    String getPath() {
+        return path;
+    }
+
+    // package-protected for PathPatternMatcher
+    Pattern getPattern() {
+        return pattern;
+    }
+
     @Override
     public String toString() {
-        return String.format("%s: path=[ %s ], pattern=[ %s ], positions=[ %s ]", PathPattern.class.getSimpleName(), path, pattern, positions);
+        return String.format("%s: path=[ %s ], pattern=[ %s ], positions=[ %s ], strategies=[ %s ]", PathPattern.class.getSimpleName(), path, pattern, positions, redirectStrategies);
     }
 
+    // package-protected for junit testing
+    static final Comparator<String> PATH_ORDER = new Comparator<String>(){
+        @Override
+        public int compare(String o1, String o2) {
+            //return o1.compareTo(o2);
+            // make longer paths match first
+            int l1 = o1.length();
+            int l2 = o2.length();
+            if (l1 > l2) {
+                return -1;
+            } else if (l2 > l1) {
+                return 1;
+            } else {
+                return o1.compareTo(o2);
+            }
+        }};
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static List<PathPattern> buildPathPatterns() {
-        Set<String> paths = new TreeSet<String>(new Comparator<String>(){
-            @Override
-            public int compare(String o1, String o2) {
-                //return o1.compareTo(o2);
-                // make longer paths match first
-                int l1 = o1.length();
-                int l2 = o2.length();
-                if (l1 > l2) {
-                    return -1;
-                } else if (l2 > l1) {
-                    return 1;
-                } else {
-                    return o1.compareTo(o2);
-                }
-            }});
+        // path -> query parameters of all the methods sharing it
+        Map<String, Set<String>> paths = new TreeMap<String, Set<String>>(PATH_ORDER);
         KieServerApplication app = new KieServerApplication();
         Set<Object> singletons = app.getSingletons();
         for (Object singleton : singletons) {
@@ -181,15 +263,26 @@ public final class PathPattern {
                 }
                 for (Class jaxrsMethod : JAXRS_METHODS) {
                     if (javaMethod.isAnnotationPresent(jaxrsMethod)) {
-                        paths.add(path);
+                        Set<String> queryParams = paths.get(path);
+                        if (queryParams == null) {
+                            queryParams = new HashSet<String>();
+                            paths.put(path, queryParams);
+                        }
+                        for (Annotation[] paramAnnotations : javaMethod.getParameterAnnotations()) {
+                            for (Annotation paramAnnotation : paramAnnotations) {
+                                if (paramAnnotation instanceof QueryParam) {
+                                    queryParams.add(((QueryParam)paramAnnotation).value());
+                                }
+                            }
+                        }
                         break;
                     }
                 }
             }
         }
         List<PathPattern> pathPatterns = new ArrayList<PathPattern>();
-        for (String path : paths) {
-            PathPattern pp = new PathPattern(path);
+        for (Map.Entry<String, Set<String>> path : paths.entrySet()) {
+            PathPattern pp = new PathPattern(path.getKey(), path.getValue());
             //System.out.println(pp);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(pp.toString());
@@ -0,0 +1,233 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Segment trie over a prioritized list of {@link PathPattern}s.
+ * <p>
+ * Literal segments are tried first, then numeric variables, then any variables. Since a request
+ * can match more than one pattern, every node remembers the best (lowest) priority found beneath it,
+ * which both prunes the search and guarantees the same answer as scanning the list in order.
+ * Patterns whose segments are neither plain literals nor whole <code>{var}</code> segments are
+ * kept aside and checked with their regular expression.
+ */
+public final class PathPatternMatcher {
+
+    private static final String REGEX_CHARS = "\\^$.|?*+()[]{}";
+
+    private final Node root = new Node();
+    private final List<PathPattern> regexPatterns = new ArrayList<PathPattern>();
+    private final List<Integer> regexRanks = new ArrayList<Integer>();
+
+    public PathPatternMatcher(List<PathPattern> pathPatterns) {
+        for (int rank=0; rank < pathPatterns.size(); rank++) {
+            PathPattern pathPattern = pathPatterns.get(rank);
+            // patterns without variables never match; see PathPattern.matches
+            if (pathPattern.getPattern() != null && !add(pathPattern, rank)) {
+                regexPatterns.add(pathPattern);
+                regexRanks.add(rank);
+            }
+        }
+    }
+
+    private boolean add(PathPattern pathPattern, int rank) {
+        String[] segs = toSegments(pathPattern.getPath());
+        for (String seg : segs) {
+            if (!isVariable(seg) && !isLiteral(seg)) {
+                return false;
+            }
+        }
+        Node node = root;
+        node.minRank = Math.min(node.minRank, rank);
+        for (String seg : segs) {
+            node = node.child(seg);
+            node.minRank = Math.min(node.minRank, rank);
+        }
+        if (node.pathPattern == null) {
+            node.pathPattern = pathPattern;
+            node.rank = rank;
+        }
+        return true;
+    }
+
+    public PathMatch match(HttpServletRequest request) {
+        PathPattern pathPattern = request != null ? getPathPattern(request.getPathInfo()) : null;
+        return pathPattern != null ? new PathMatch(pathPattern, pathPattern.extractVariables(request)) : null;
+    }
+
+    public PathPattern getPathPattern(String pathInfo) {
+        if (pathInfo == null) {
+            return null;
+        }
+        if (!pathInfo.startsWith("/")) {
+            pathInfo = "/" + pathInfo;
+        }
+        Search search = new Search(pathInfo);
+        search.visit(root, 0);
+        for (int i=0; i < regexPatterns.size(); i++) {
+            int rank = regexRanks.get(i);
+            if (rank >= search.rank) {
+                break;
+            }
+            PathPattern pathPattern = regexPatterns.get(i);
+            if (pathPattern.matches(pathInfo)) {
+                search.found(pathPattern, rank);
+                break;
+            }
+        }
+        return search.pathPattern;
+    }
+
+    private static String[] toSegments(String path) {
+        // keep trailing empty segments, as the regular expressions would
+        return path.substring(1).split("/", -1);
+    }
+
+    private static boolean isVariable(String seg) {
+        return seg.length() > 2 && seg.charAt(0) == '{' && seg.charAt(seg.length()-1) == '}' && seg.indexOf('{', 1) < 0 && seg.indexOf('}') == seg.length()-1;
+    }
+
+    private static boolean isLiteral(String seg) {
+        for (int i=0; i < seg.length(); i++) {
+            if (REGEX_CHARS.indexOf(seg.charAt(i)) > -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> literals;
+        private Node numeric;
+        private Node any;
+        private PathPattern pathPattern;
+        private int rank = Integer.MAX_VALUE;
+        private int minRank = Integer.MAX_VALUE;
+
+        private Node child(String seg) {
+            if (isVariable(seg)) {
+                if (PathPattern.isNumericVariable(seg.substring(1, seg.length()-1))) {
+                    if (numeric == null) {
+                        numeric = new Node();
+                    }
+                    return numeric;
+                }
+                if (any == null) {
+                    any = new Node();
+                }
+                return any;
+            }
+            if (literals == null) {
+                literals = new HashMap<String, Node>();
+            }
+            Node child = literals.get(seg);
+            if (child == null) {
+                child = new Node();
+                literals.put(seg, child);
+            }
+            return child;
+        }
+
+    }
+
+    private static final class Search {
+
+        private final String path;
+        private final int[] starts;
+        private final int[] ends;
+        private final int count;
+        private PathPattern pathPattern = null;
+        private int rank = Integer.MAX_VALUE;
+
+        private Search(String path) {
+            this.path = path;
+            int segs = 1;
+            for (int i=1; i < path.length(); i++) {
+                if (path.charAt(i) == '/') {
+                    segs++;
+                }
+            }
+            starts = new int[segs];
+            ends = new int[segs];
+            int start = 1;
+            for (int i=0; i < segs; i++) {
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = path.length();
+                }
+                starts[i] = start;
+                ends[i] = end;
+                start = end + 1;
+            }
+            count = segs;
+        }
+
+        private void visit(Node node, int i) {
+            if (node.minRank >= rank) {
+                return;
+            }
+            if (i == count) {
+                if (node.pathPattern != null) {
+                    found(node.pathPattern, node.rank);
+                }
+                return;
+            }
+            int start = starts[i];
+            int end = ends[i];
+            if (node.literals != null) {
+                Node child = node.literals.get(path.substring(start, end));
+                if (child != null) {
+                    visit(child, i+1);
+                }
+            }
+            if (end > start) {
+                if (node.numeric != null && isNumeric(start, end)) {
+                    visit(node.numeric, i+1);
+                }
+                if (node.any != null) {
+                    visit(node.any, i+1);
+                }
+            }
+        }
+
+        private boolean isNumeric(int start, int end) {
+            for (int i=start; i < end; i++) {
+                char c = path.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void found(PathPattern pathPattern, int rank) {
+            if (rank < this.rank) {
+                this.pathPattern = pathPattern;
+                this.rank = rank;
+            }
+        }
+
+    }
+
+}
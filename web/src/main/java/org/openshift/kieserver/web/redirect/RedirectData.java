@@ -16,9 +16,12 @@
 package org.openshift.kieserver.web.redirect;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface RedirectData {
 
+    public List<RedirectStrategy> getRedirectStrategies();
+
     public String getRequestedContainerId();
 
     public String getDeploymentIdByConversationId();
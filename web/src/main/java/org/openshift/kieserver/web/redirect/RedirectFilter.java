@@ -17,7 +17,6 @@ package org.openshift.kieserver.web.redirect;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import javax.servlet.Filter;
@@ -30,6 +29,7 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.openshift.kieserver.common.server.DeploymentHelper;
 import org.openshift.kieserver.common.server.ServerConfig;
+import org.openshift.kieserver.common.server.ServerConfigWatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,18 +37,28 @@ public class RedirectFilter implements Filter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RedirectFilter.class);
 
-    private ServerConfig serverConfig = null;
     private boolean containerRedirectEnabled = false;
-    private List<PathPattern> pathPatterns = null;
+    private PathPatternMatcher pathPatternMatcher = null;
     private DeploymentHelper deploymentHelper = null;
+    private RedirectMetrics metrics = null;
+
+    public RedirectFilter() {}
+
+    // package-protected for benchmarks
+    RedirectFilter(DeploymentHelper deploymentHelper) {
+        this.deploymentHelper = deploymentHelper;
+    }
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
-        serverConfig = ServerConfig.getInstance();
-        containerRedirectEnabled = serverConfig.isContainerRedirectEnabled();
+        containerRedirectEnabled = ServerConfig.getInstance().isContainerRedirectEnabled();
         if (containerRedirectEnabled) {
-            pathPatterns = PathPattern.buildPathPatterns();
-            deploymentHelper = new DeploymentHelper();
+            pathPatternMatcher = new PathPatternMatcher(PathPattern.buildPathPatterns());
+            if (deploymentHelper == null) {
+                deploymentHelper = new DeploymentHelper();
+            }
+            ServerConfigWatcher.start();
+            metrics = RedirectMetrics.start();
         }
     }
 
@@ -59,63 +69,23 @@ public class RedirectFilter implements Filter {
             chain.doFilter(request, response);
             return;
         }
+        long start = metrics != null ? System.nanoTime() : 0;
+        // the same snapshot for the whole request, even if it gets reloaded meanwhile
+        ServerConfig serverConfig = ServerConfig.getInstance();
         String redirect = null;
         String redirectDeploymentId = null;
-        RedirectData data = new ServletRedirectData(request, response, pathPatterns, deploymentHelper);
+        RedirectStrategy redirectStrategy = null;
+        RedirectData data = new ServletRedirectData(request, response, pathPatternMatcher, deploymentHelper);
         String requestedContainerId = data.getRequestedContainerId();
         // only if the id is not an actual deployment, do we try to redirect
         if (!serverConfig.hasDeploymentId(requestedContainerId)) {
-            if (redirect == null) {
-                redirectDeploymentId = serverConfig.getDeploymentIdForContainerConfig(requestedContainerId);
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = data.getDeploymentIdByProcessInstanceId();
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = data.getDeploymentIdByCorrelationKey();
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = data.getDeploymentIdByTaskInstanceId();
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = data.getDeploymentIdByWorkItemId();
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = data.getDeploymentIdByJobId();
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
-                    redirect = data.buildRedirect(redirectDeploymentId);
-                }
-            }
-            if (redirect == null) {
-                String conversationDeploymentId = data.getDeploymentIdByConversationId();
-                String containerAlias = serverConfig.getContainerAliasForDeploymentId(conversationDeploymentId);
-                String containerConfig = serverConfig.getContainerConfigForDeploymentId(conversationDeploymentId);
-                if (requestedContainerId == null || requestedContainerId.equals(containerAlias) || requestedContainerId.equals(containerConfig)) {
-                    if (serverConfig.hasDeploymentId(conversationDeploymentId)) {
-                        redirectDeploymentId = conversationDeploymentId;
-                        redirect = data.buildRedirect(redirectDeploymentId);
-                    }
-                }
-            }
-            if (redirect == null) {
-                redirectDeploymentId = serverConfig.getDefaultDeploymentIdForAlias(requestedContainerId);
-                if (serverConfig.hasDeploymentId(redirectDeploymentId)) {
+            // only the strategies the matched path can feed, in priority order; the first to resolve wins
+            for (RedirectStrategy strategy : data.getRedirectStrategies()) {
+                redirectDeploymentId = strategy.resolve(data, serverConfig, requestedContainerId);
+                if (redirectDeploymentId != null) {
+                    redirectStrategy = strategy;
                     redirect = data.buildRedirect(redirectDeploymentId);
+                    break;
                 }
             }
         }
@@ -142,9 +112,12 @@ public class RedirectFilter implements Filter {
             }
             request = new RedirectServletRequestWrapper(httpRequest, requestedContainerId);
         }
+        if (metrics != null) {
+            metrics.record(redirectStrategy, System.nanoTime() - start);
+        }
         if (redirect != null) {
             if (LOGGER.isDebugEnabled()) {
-                String log = String.format("doFilter redirecting from %s%s to %s", httpRequest.getServletPath(), httpRequest.getPathInfo(), redirect);
+                String log = String.format("doFilter redirecting from %s%s to %s (%s)", httpRequest.getServletPath(), httpRequest.getPathInfo(), redirect, redirectStrategy != null ? redirectStrategy.getTag() : "none");
                 LOGGER.debug(log);
             }
             request.getRequestDispatcher(redirect).forward(request, response);
@@ -155,10 +128,16 @@ public class RedirectFilter implements Filter {
 
     @Override
     public void destroy() {
-        serverConfig = null;
+        if (containerRedirectEnabled) {
+            ServerConfigWatcher.stop();
+        }
         containerRedirectEnabled = false;
-        pathPatterns = null;
+        pathPatternMatcher = null;
         deploymentHelper = null;
+        if (metrics != null) {
+            RedirectMetrics.stop();
+            metrics = null;
+        }
     }
 
 }
@@ -0,0 +1,239 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openshift.kieserver.common.server.DeploymentCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * What RedirectFilter does, when KIE_CONTAINER_REDIRECT_METRICS_ENABLED is true: the redirects per strategy,
+ * the requests left as they are, and a histogram of the time doFilter spends deciding, up to where it forwards
+ * or continues the chain. Cache hits and database lookups are read from the caches themselves.
+ * <p>
+ * Exposed as an MXBean, and as text by {@link RedirectMetricsServlet}. When disabled, the filter has no
+ * metrics and only checks for null.
+ */
+public final class RedirectMetrics implements RedirectMetricsMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedirectMetrics.class);
+
+    static final String OBJECT_NAME = "org.openshift.kieserver:type=RedirectMetrics";
+
+    // bucket i counts the times up to 2^i nanoseconds
+    static final int BUCKETS = 64;
+
+    private static final AtomicReference<RedirectMetrics> STARTED = new AtomicReference<RedirectMetrics>();
+
+    private final LongAdder[] redirects = newAdders(RedirectStrategy.values().length);
+    private final LongAdder unredirected = new LongAdder();
+    private final LongAdder[] filterNanos = newAdders(BUCKETS);
+    private final LongAdder totalFilterNanos = new LongAdder();
+
+    // package-protected for JUnit testing
+    RedirectMetrics() {}
+
+    /**
+     * Returns the started metrics, or null if they are not enabled.
+     */
+    public static RedirectMetrics getInstance() {
+        return STARTED.get();
+    }
+
+    /**
+     * Starts and registers the metrics, if enabled and nobody has started them already.
+     * Returns the started metrics, or null if they are not enabled.
+     */
+    static RedirectMetrics start() {
+        String enabled = System.getenv("KIE_CONTAINER_REDIRECT_METRICS_ENABLED");
+        if (enabled == null || !Boolean.valueOf(enabled.trim().toLowerCase())) {
+            return null;
+        }
+        RedirectMetrics metrics = new RedirectMetrics();
+        if (STARTED.compareAndSet(null, metrics)) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(metrics, name);
+                }
+            } catch (Exception e) {
+                // still served by the servlet
+                LOGGER.warn(String.format("unable to register %s: %s", OBJECT_NAME, e.getMessage()));
+            }
+        }
+        return STARTED.get();
+    }
+
+    static void stop() {
+        if (STARTED.getAndSet(null) != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (Exception e) {
+                LOGGER.warn(String.format("unable to unregister %s: %s", OBJECT_NAME, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Records one request, redirected by the strategy, or not redirected if it is null.
+     */
+    void record(RedirectStrategy strategy, long nanos) {
+        if (strategy != null) {
+            redirects[strategy.ordinal()].increment();
+        } else {
+            unredirected.increment();
+        }
+        filterNanos[bucket(nanos)].increment();
+        totalFilterNanos.add(nanos);
+    }
+
+    // package-protected for JUnit testing
+    static int bucket(long nanos) {
+        return nanos <= 1 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos - 1);
+    }
+
+    @Override
+    public long getRequests() {
+        long requests = unredirected.sum();
+        for (LongAdder adder : redirects) {
+            requests += adder.sum();
+        }
+        return requests;
+    }
+
+    @Override
+    public Map<String,Long> getRedirectsByStrategy() {
+        Map<String,Long> map = new LinkedHashMap<String,Long>();
+        for (RedirectStrategy strategy : RedirectStrategy.values()) {
+            map.put(strategy.getTag(), redirects[strategy.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public long getUnredirected() {
+        return unredirected.sum();
+    }
+
+    @Override
+    public double getMeanFilterMicros() {
+        long requests = getRequests();
+        return requests > 0 ? (totalFilterNanos.sum() / (double)requests) / 1000 : 0;
+    }
+
+    @Override
+    public Map<String,Long> getFilterNanosHistogram() {
+        Map<String,Long> map = new LinkedHashMap<String,Long>();
+        for (int i=0; i < BUCKETS; i++) {
+            long count = filterNanos[i].sum();
+            if (count > 0) {
+                map.put(String.valueOf(1L << i), count);
+            }
+        }
+        return map;
+    }
+
+    @Override
+    public long getDeploymentLookups() {
+        // every miss goes to the loader, and the loader to the database
+        return DeploymentCache.getInstance().getMisses();
+    }
+
+    @Override
+    public double getDeploymentCacheHitRatio() {
+        DeploymentCache cache = DeploymentCache.getInstance();
+        return ratio(cache.getHits(), cache.getMisses());
+    }
+
+    @Override
+    public double getConversationIdCacheHitRatio() {
+        ConversationIdCache cache = ConversationIdCache.getInstance();
+        return ratio(cache.getHits(), cache.getMisses());
+    }
+
+    /**
+     * The metrics in the Prometheus text format.
+     */
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("# TYPE kie_redirect_requests_total counter\n");
+        for (RedirectStrategy strategy : RedirectStrategy.values()) {
+            sample(sb, "kie_redirect_requests_total{strategy=\"" + strategy.getTag() + "\"}", redirects[strategy.ordinal()].sum());
+        }
+        sample(sb, "kie_redirect_requests_total{strategy=\"none\"}", unredirected.sum());
+        sb.append("# TYPE kie_redirect_filter_seconds histogram\n");
+        long[] counts = new long[BUCKETS];
+        int last = -1;
+        for (int i=0; i < BUCKETS; i++) {
+            counts[i] = filterNanos[i].sum();
+            if (counts[i] > 0) {
+                last = i;
+            }
+        }
+        long cumulative = 0;
+        for (int i=0; i <= last; i++) {
+            cumulative += counts[i];
+            sample(sb, "kie_redirect_filter_seconds_bucket{le=\"" + (1L << i) / (double)TimeUnit.SECONDS.toNanos(1) + "\"}", cumulative);
+        }
+        sample(sb, "kie_redirect_filter_seconds_bucket{le=\"+Inf\"}", cumulative);
+        sb.append("kie_redirect_filter_seconds_sum ").append(totalFilterNanos.sum() / (double)TimeUnit.SECONDS.toNanos(1)).append('\n');
+        sample(sb, "kie_redirect_filter_seconds_count", cumulative);
+        DeploymentCache deploymentCache = DeploymentCache.getInstance();
+        sb.append("# TYPE kie_redirect_deployment_cache_hits_total counter\n");
+        sample(sb, "kie_redirect_deployment_cache_hits_total", deploymentCache.getHits());
+        sb.append("# TYPE kie_redirect_deployment_lookups_total counter\n");
+        sample(sb, "kie_redirect_deployment_lookups_total", deploymentCache.getMisses());
+        ConversationIdCache conversationIdCache = ConversationIdCache.getInstance();
+        sb.append("# TYPE kie_redirect_conversation_id_cache_hits_total counter\n");
+        sample(sb, "kie_redirect_conversation_id_cache_hits_total", conversationIdCache.getHits());
+        sb.append("# TYPE kie_redirect_conversation_id_cache_misses_total counter\n");
+        sample(sb, "kie_redirect_conversation_id_cache_misses_total", conversationIdCache.getMisses());
+        return sb.toString();
+    }
+
+    private static void sample(StringBuilder sb, String name, long value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total > 0 ? hits / (double)total : 0;
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i=0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+}
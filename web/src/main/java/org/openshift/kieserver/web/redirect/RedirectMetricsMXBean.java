@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link RedirectMetrics}.
+ */
+public interface RedirectMetricsMXBean {
+
+    /**
+     * Requests seen by the filter while redirecting was enabled.
+     */
+    long getRequests();
+
+    /**
+     * Redirects, by strategy tag.
+     */
+    Map<String,Long> getRedirectsByStrategy();
+
+    /**
+     * Requests that were not redirected.
+     */
+    long getUnredirected();
+
+    double getMeanFilterMicros();
+
+    /**
+     * Filter times, counted by bucket upper bound in nanoseconds. Empty buckets are left out.
+     */
+    Map<String,Long> getFilterNanosHistogram();
+
+    /**
+     * Deployment id lookups that went to the database.
+     */
+    long getDeploymentLookups();
+
+    double getDeploymentCacheHitRatio();
+
+    double getConversationIdCacheHitRatio();
+
+}
@@ -17,18 +17,23 @@ package org.openshift.kieserver.web.redirect;
 
 import static org.openshift.kieserver.common.id.ConversationId.KIE_CONVERSATION_ID_TYPE_HEADER;
 
+import java.util.AbstractMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 
 import org.kie.server.api.KieServerEnvironment;
-import org.kie.server.api.model.ReleaseId;
 import org.kie.server.services.impl.KieContainerInstanceImpl;
 import org.kie.server.services.impl.KieServerLocator;
 import org.openshift.kieserver.common.id.ConversationId;
@@ -40,6 +45,10 @@ public class RedirectServletRequestWrapper extends HttpServletRequestWrapper {
     private final HttpServletRequest request;
     private final String conversationId;
     private final Map<String, String[]> parameterOverrides;
+    // request scoped, so computed at most once and not shared between threads
+    private Map<String, String[]> parameterMap = null;
+    private String queryString = null;
+    private boolean queryStringRewritten = false;
 
     public RedirectServletRequestWrapper(HttpServletRequest request) {
         this(request, null);
@@ -56,11 +65,7 @@ public class RedirectServletRequestWrapper extends HttpServletRequestWrapper {
         if (redirectDeploymentId != null && CONVERSATION_ID_SUPPORTED) {
             KieContainerInstanceImpl container = KieServerLocator.getInstance().getServerRegistry().getContainer(redirectDeploymentId);
             if (container != null) {
-                ReleaseId releaseId = container.getResource().getResolvedReleaseId();
-                if (releaseId == null) {
-                    releaseId = container.getResource().getReleaseId();
-                }
-                redirectConversationId = ConversationId.from(KieServerEnvironment.getServerId(), redirectDeploymentId, releaseId).toString();
+                redirectConversationId = ConversationIdCache.getInstance().getConversationId(KieServerEnvironment.getServerId(), redirectDeploymentId, container);
             }
         }
         this.conversationId = redirectConversationId;
@@ -116,37 +121,172 @@ public class RedirectServletRequestWrapper extends HttpServletRequestWrapper {
 
     @Override
     public Map<String, String[]> getParameterMap() {
-        Map<String, String[]> parameterMap = new HashMap<String, String[]>();
-        parameterMap.putAll(request.getParameterMap());
-        parameterMap.putAll(parameterOverrides);
+        if (parameterMap == null) {
+            parameterMap = parameterOverrides.isEmpty() ? request.getParameterMap() : new OverlayParameterMap(request.getParameterMap(), parameterOverrides);
+        }
         return parameterMap;
     }
 
     @Override
     public Enumeration<String> getParameterNames() {
+        if (parameterOverrides.isEmpty()) {
+            return request.getParameterNames();
+        }
         return Collections.enumeration(getParameterMap().keySet());
     }
 
     @Override
     public String[] getParameterValues(String name) {
-        return getParameterMap().get(name);
+        String[] values = parameterOverrides.get(name);
+        return values != null ? values : request.getParameterValues(name);
     }
 
     @Override
     public String getQueryString() {
-        String queryString = request.getQueryString();
-        if (queryString != null && !parameterOverrides.isEmpty()) {
-            // TODO: fix regex so we don't need to add the preceding question mark
-            if (!queryString.startsWith("?")) {
-                queryString = "?" + queryString;
+        if (!queryStringRewritten) {
+            queryString = rewriteQueryString(request.getQueryString());
+            queryStringRewritten = true;
+        }
+        return queryString;
+    }
+
+    /*
+     * Replaces the value of every name=value pair with an overridden name, in one pass.
+     * package-protected for JUnit testing
+     */
+    String rewriteQueryString(String queryString) {
+        if (queryString == null || parameterOverrides.isEmpty()) {
+            return queryString;
+        }
+        int length = queryString.length();
+        StringBuilder sb = null;
+        // any leading question mark is dropped
+        int start = queryString.startsWith("?") ? 1 : 0;
+        int copied = start;
+        while (start <= length) {
+            int end = start;
+            while (end < length && queryString.charAt(end) != '&' && queryString.charAt(end) != ';') {
+                end++;
             }
-            for (String name : parameterOverrides.keySet()) {
-                String value = getParameter(name);
-                queryString = queryString.replaceAll("(?<=[?&;])" + name + "=[^&;]*", name + "=" + value);
+            int equals = queryString.indexOf('=', start);
+            if (equals > start && equals < end) {
+                String name = queryString.substring(start, equals);
+                if (parameterOverrides.containsKey(name)) {
+                    if (sb == null) {
+                        sb = new StringBuilder(length + 16);
+                    }
+                    sb.append(queryString, copied, equals + 1).append(getParameter(name));
+                    copied = end;
+                }
             }
-            return queryString.startsWith("?") ? queryString.substring(1, queryString.length()) : queryString;
+            start = end + 1;
         }
-        return queryString;
+        if (sb == null) {
+            return copied > 0 ? queryString.substring(copied) : queryString;
+        }
+        return sb.append(queryString, copied, length).toString();
+    }
+
+    /**
+     * The request parameters as seen through the overrides, without copying either.
+     */
+    private static final class OverlayParameterMap extends AbstractMap<String, String[]> {
+
+        private final Map<String, String[]> parameters;
+        private final Map<String, String[]> overrides;
+        private Set<Entry<String, String[]>> entrySet = null;
+
+        private OverlayParameterMap(Map<String, String[]> parameters, Map<String, String[]> overrides) {
+            this.parameters = parameters;
+            this.overrides = overrides;
+        }
+
+        @Override
+        public String[] get(Object key) {
+            String[] values = overrides.get(key);
+            return values != null ? values : parameters.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return overrides.containsKey(key) || parameters.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, String[]>> entrySet() {
+            if (entrySet == null) {
+                entrySet = new AbstractSet<Entry<String, String[]>>() {
+                    @Override
+                    public Iterator<Entry<String, String[]>> iterator() {
+                        return new OverlayIterator(parameters, overrides);
+                    }
+                    @Override
+                    public int size() {
+                        int size = overrides.size();
+                        for (String name : parameters.keySet()) {
+                            if (!overrides.containsKey(name)) {
+                                size++;
+                            }
+                        }
+                        return size;
+                    }
+                };
+            }
+            return entrySet;
+        }
+
+    }
+
+    // the request parameters, overridden ones replaced in place, then the overrides the request did not have
+    private static final class OverlayIterator implements Iterator<Entry<String, String[]>> {
+
+        private final Map<String, String[]> parameters;
+        private final Map<String, String[]> overrides;
+        private final Iterator<Entry<String, String[]>> parameterIterator;
+        private final Iterator<Entry<String, String[]>> overrideIterator;
+        private Entry<String, String[]> next = null;
+
+        private OverlayIterator(Map<String, String[]> parameters, Map<String, String[]> overrides) {
+            this.parameters = parameters;
+            this.overrides = overrides;
+            parameterIterator = parameters.entrySet().iterator();
+            overrideIterator = overrides.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (parameterIterator.hasNext()) {
+                    Entry<String, String[]> entry = parameterIterator.next();
+                    String[] values = overrides.get(entry.getKey());
+                    next = values != null ? new SimpleImmutableEntry<String, String[]>(entry.getKey(), values) : entry;
+                } else if (overrideIterator.hasNext()) {
+                    Entry<String, String[]> entry = overrideIterator.next();
+                    if (!parameters.containsKey(entry.getKey())) {
+                        next = entry;
+                    }
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<String, String[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, String[]> entry = next;
+            next = null;
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
     }
 
 }
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.openshift.kieserver.web.redirect.PathPattern.JOB_ID;
+import static org.openshift.kieserver.web.redirect.PathPattern.P_INSTANCE_ID;
+import static org.openshift.kieserver.web.redirect.PathPattern.T_INSTANCE_ID;
+import static org.openshift.kieserver.web.redirect.PathPattern.WORK_ITEM_ID;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.openshift.kieserver.common.server.ServerConfig;
+
+/**
+ * The ways RedirectFilter can resolve the deployment to redirect to, in priority order.
+ */
+public enum RedirectStrategy {
+
+    CONTAINER_CONFIG("config") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, serverConfig.getDeploymentIdForContainerConfig(requestedContainerId));
+        }
+    },
+
+    PROCESS_INSTANCE("pInstanceId") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, data.getDeploymentIdByProcessInstanceId());
+        }
+    },
+
+    CORRELATION_KEY("correlationKey") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, data.getDeploymentIdByCorrelationKey());
+        }
+    },
+
+    TASK_INSTANCE("tInstanceId") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, data.getDeploymentIdByTaskInstanceId());
+        }
+    },
+
+    WORK_ITEM("workItemId") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, data.getDeploymentIdByWorkItemId());
+        }
+    },
+
+    JOB("jobId") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, data.getDeploymentIdByJobId());
+        }
+    },
+
+    CONVERSATION("conversation") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            String conversationDeploymentId = data.getDeploymentIdByConversationId();
+            String containerAlias = serverConfig.getContainerAliasForDeploymentId(conversationDeploymentId);
+            String containerConfig = serverConfig.getContainerConfigForDeploymentId(conversationDeploymentId);
+            if (requestedContainerId == null || requestedContainerId.equals(containerAlias) || requestedContainerId.equals(containerConfig)) {
+                return deployed(serverConfig, conversationDeploymentId);
+            }
+            return null;
+        }
+    },
+
+    DEFAULT_ALIAS("default") {
+        @Override
+        String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId) {
+            return deployed(serverConfig, serverConfig.getDefaultDeploymentIdForAlias(requestedContainerId));
+        }
+    };
+
+    // the instanceId query parameter also resolves by process instance; see ServletRedirectData
+    static final String INSTANCE_ID_PARAM = "instanceId";
+
+    private static final List<RedirectStrategy> DEFAULT_PLAN = plan(Collections.<String>emptySet(), null);
+
+    private final String tag;
+
+    private RedirectStrategy(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * Returns the resolved deployment id, or null if this strategy cannot resolve a deployed one.
+     */
+    abstract String resolve(RedirectData data, ServerConfig serverConfig, String requestedContainerId);
+
+    private static String deployed(ServerConfig serverConfig, String deploymentId) {
+        return serverConfig.hasDeploymentId(deploymentId) ? deploymentId : null;
+    }
+
+    /**
+     * Builds the plan for a path: only the strategies its variables (and, when known, its query parameters)
+     * can feed, in priority order. The config, conversation and default alias strategies always apply,
+     * since they work off the requested container id and the conversation header.
+     *
+     * @param variables the path variables
+     * @param queryParams the query parameters, or null if unknown
+     */
+    static List<RedirectStrategy> plan(Collection<String> variables, Collection<String> queryParams) {
+        List<RedirectStrategy> plan = new ArrayList<RedirectStrategy>();
+        plan.add(CONTAINER_CONFIG);
+        if (variables.contains(P_INSTANCE_ID) || queryParams == null || queryParams.contains(INSTANCE_ID_PARAM)) {
+            plan.add(PROCESS_INSTANCE);
+        }
+        if (variables.contains(PathPattern.CORRELATION_KEY)) {
+            plan.add(CORRELATION_KEY);
+        }
+        if (variables.contains(T_INSTANCE_ID)) {
+            plan.add(TASK_INSTANCE);
+        }
+        if (variables.contains(WORK_ITEM_ID)) {
+            plan.add(WORK_ITEM);
+        }
+        if (variables.contains(JOB_ID)) {
+            plan.add(JOB);
+        }
+        plan.add(CONVERSATION);
+        plan.add(DEFAULT_ALIAS);
+        return Collections.unmodifiableList(plan);
+    }
+
+    /**
+     * The plan used when no path pattern matched the request.
+     */
+    static List<RedirectStrategy> defaultPlan() {
+        return DEFAULT_PLAN;
+    }
+
+}
@@ -46,29 +46,24 @@ public class ServletRedirectData implements RedirectData {
     public ServletRedirectData(
             ServletRequest request,
             ServletResponse response, 
-            List<PathPattern> pathPatterns,
+            PathPatternMatcher pathPatternMatcher,
             DeploymentHelper deploymentHelper) {
         this.request = (HttpServletRequest)request;
         this.response = (HttpServletResponse)response;
-        this.pathPattern = getPathPattern(pathPatterns);
-        this.pathVariables = getPathVariables(pathPattern);
-        this.deploymentHelper = deploymentHelper;
-    }
-
-    private PathPattern getPathPattern(List<PathPattern> pathPatterns) {
-        for (PathPattern pathPattern : pathPatterns) {
-            if (pathPattern.matches(request)) {
-                return pathPattern;
-            }
+        PathMatch pathMatch = pathPatternMatcher.match(this.request);
+        if (pathMatch != null) {
+            this.pathPattern = pathMatch.getPathPattern();
+            this.pathVariables = pathMatch.getVariables();
+        } else {
+            this.pathPattern = null;
+            this.pathVariables = Collections.emptyMap();
         }
-        return null;
+        this.deploymentHelper = deploymentHelper;
     }
 
-    private Map<String, String> getPathVariables(PathPattern pathPattern) {
-        if (pathPattern != null) {
-            return pathPattern.getVariables(request);
-        }
-        return Collections.emptyMap();
+    @Override
+    public List<RedirectStrategy> getRedirectStrategies() {
+        return pathPattern != null ? pathPattern.getRedirectStrategies() : RedirectStrategy.defaultPlan();
     }
 
     @Override
@@ -103,7 +98,7 @@ public class ServletRedirectData implements RedirectData {
         String pInstanceId = pathVariables.get(P_INSTANCE_ID);
         String deploymentId = deploymentHelper.getDeploymentIdByProcessInstanceId(pInstanceId);
         if (deploymentId == null) {
-            String[] instanceId = request.getParameterValues("instanceId");
+            String[] instanceId = request.getParameterValues(RedirectStrategy.INSTANCE_ID_PARAM);
             deploymentId = deploymentHelper.getDeploymentIdByProcessInstanceIds(instanceId);
         }
         return deploymentId;
@@ -124,7 +119,7 @@ public class ServletRedirectData implements RedirectData {
     @Override
     public String buildRedirect(String deploymentId) {
         if (pathPattern != null) {
-            return pathPattern.buildRedirectPath(request, deploymentId);
+            return pathPattern.buildRedirectPath(request, pathVariables, deploymentId);
         }
         return null;
     }
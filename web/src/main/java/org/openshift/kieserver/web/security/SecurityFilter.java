@@ -15,56 +15,233 @@
  */
 package org.openshift.kieserver.web.security;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 
-public class SecurityFilter implements Filter {
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-    private final List<SecurityRule> rules = new ArrayList<SecurityRule>();
-    private String source;
+/**
+ * Forbids requests whose path and method match a rule, unless the user has the rule's role.
+ * Each property of the properties resource is a rule, named by its key, with a
+ * <code>pattern|METHOD,METHOD|role</code> value. Rules are checked in the order of their names,
+ * and the first one to forbid a request is the one reported.
+ * <p>
+ * With a reloadInterval (seconds) init parameter, the resource is read again at that interval, and
+ * when its content changed, the new rules are compiled on the reloading thread and swapped in whole.
+ * If they do not load, the current rules stay in place.
+ * <p>
+ * The reload counters are exposed as an MXBean named after the filter.
+ */
+public class SecurityFilter implements Filter, SecurityFilterMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecurityFilter.class);
+
+    static final String OBJECT_NAME = "org.openshift.kieserver:type=SecurityFilter,name=";
+
+    private final AtomicReference<SecurityRules> rules = new AtomicReference<SecurityRules>(SecurityRules.empty());
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadFailures = new AtomicLong();
+    private ScheduledExecutorService reloader = null;
+    private ObjectName objectName = null;
+    // the last content tried, so the same broken content is only reported once
+    private byte[] content = null;
+    // likewise for a source that cannot be read
+    private boolean unreadable = false;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
-        String source = filterConfig.getInitParameter("properties");
+        final String source = filterConfig.getInitParameter("properties");
         if (source != null) {
-            InputStream stream = filterConfig.getServletContext().getResourceAsStream(source);
-            if (stream == null) {
+            final ServletContext servletContext = filterConfig.getServletContext();
+            byte[] content;
+            try {
+                content = read(servletContext, source);
+            } catch (IOException ioe) {
+                throw new ServletException("problem loading properties from " + source, ioe);
+            }
+            if (content == null) {
                 throw new ServletException("properties not found at " + source);
-            } else {
-                Properties properties = new Properties();
-                try {
-                    properties.load(stream);
-                } catch (IOException ioe) {
-                    throw new ServletException("problem loading properties from " + source, ioe);
-                }
-                init(source, properties);
+            }
+            try {
+                init(source, content);
+            } catch (IOException ioe) {
+                throw new ServletException("problem loading properties from " + source, ioe);
+            }
+            register(filterConfig.getFilterName());
+            long interval = toReloadInterval(filterConfig.getInitParameter("reloadInterval"));
+            if (interval > 0) {
+                reloader = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, SecurityFilter.class.getSimpleName());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                reloader.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        poll(servletContext, source);
+                    }
+                }, interval, interval, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Parses the reloadInterval, where 0 or less (and by default) disables reloading. Anything but a number
+     * disables it too, with a warning, rather than failing the filter.
+     * package-protected for JUnit testing
+     */
+    static long toReloadInterval(String reloadInterval) {
+        if (reloadInterval != null && !reloadInterval.trim().isEmpty()) {
+            try {
+                return Long.parseLong(reloadInterval.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warn(String.format("invalid reloadInterval: %s, not reloading", reloadInterval));
             }
         }
+        return 0;
     }
 
-    // package-protected for junit testing
+    private void register(String filterName) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME + ObjectName.quote(filterName != null ? filterName : SecurityFilter.class.getSimpleName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                objectName = name;
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("unable to register %s: %s", SecurityFilter.class.getSimpleName(), e.getMessage()));
+        }
+    }
+
+    // package-protected for JUnit testing
     void init(String source, Properties properties) {
-        this.source = source;
-        for (Object key : properties.keySet()) {
-            String name = (String)key;
-            String config = properties.getProperty(name);
-            if (config != null) {
-                rules.add(new SecurityRule(name, config));
+        rules.set(SecurityRules.fromProperties(source, properties, SecurityRules.DEFAULT_CACHE_SIZE));
+    }
+
+    private void init(String source, byte[] content) throws IOException {
+        rules.set(compile(source, content));
+        this.content = content;
+    }
+
+    /**
+     * Compiles and swaps in the rules of the content, if it changed. Returns true if it did.
+     * package-protected for JUnit testing
+     */
+    boolean reload(String source, byte[] content) {
+        if (Arrays.equals(this.content, content)) {
+            return false;
+        }
+        this.content = content;
+        try {
+            SecurityRules reloaded = compile(source, content);
+            rules.set(reloaded);
+            reloads.incrementAndGet();
+            LOGGER.info(String.format("reloaded %s rules from %s", reloaded.getRules().size(), source));
+            return true;
+        } catch (Throwable t) {
+            reloadFailures.incrementAndGet();
+            LOGGER.warn(String.format("unable to reload %s, keeping the current rules: %s", source, t.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Reads the source and reloads it. A source that cannot be read counts as one failure until it can be again.
+     * package-protected for JUnit testing
+     */
+    void poll(ServletContext servletContext, String source) {
+        byte[] content;
+        try {
+            content = read(servletContext, source);
+            if (content == null) {
+                throw new IOException("properties not found at " + source);
             }
+        } catch (Throwable t) {
+            if (!unreadable) {
+                unreadable = true;
+                reloadFailures.incrementAndGet();
+                LOGGER.warn(String.format("unable to read %s, keeping the current rules: %s", source, t.getMessage()));
+            }
+            return;
+        }
+        if (unreadable) {
+            unreadable = false;
+            LOGGER.info(String.format("%s can be read again", source));
+        }
+        reload(source, content);
+    }
+
+    private static SecurityRules compile(String source, byte[] content) throws IOException {
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(content));
+        return SecurityRules.fromProperties(source, properties, SecurityRules.DEFAULT_CACHE_SIZE);
+    }
+
+    private static byte[] read(ServletContext servletContext, String source) throws IOException {
+        InputStream stream = servletContext.getResourceAsStream(source);
+        if (stream == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            stream.close();
         }
     }
 
+    @Override
+    public String getSource() {
+        return rules.get().getSource();
+    }
+
+    @Override
+    public int getRuleCount() {
+        return rules.get().getRules().size();
+    }
+
+    @Override
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    @Override
+    public long getReloadFailureCount() {
+        return reloadFailures.get();
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -74,12 +251,14 @@ public class SecurityFilter implements Filter {
         }
     }
 
-    // package-protected for junit testing
+    // package-protected for JUnit testing
     boolean doFilter(SecurityData data) throws IOException {
-        for (SecurityRule rule : rules) {
-            if (!rule.accepts(data)) {
+        // one rule set for the whole request, even if it gets reloaded meanwhile
+        SecurityRules rules = this.rules.get();
+        for (SecurityRule rule : rules.getMatchingRules(data.getMethod(), data.getPath())) {
+            if (!data.isUserInRole(rule.getRole())) {
                 String error = "forbidden by " + rule.getName() + " rule";
-                String log = data.getPath() + " " + error + " in " + source + ": " + rule;
+                String log = data.getPath() + " " + error + " in " + rules.getSource() + ": " + rule;
                 data.log(log);
                 data.sendError(HttpServletResponse.SC_FORBIDDEN, error);
                 return false;
@@ -90,8 +269,21 @@ public class SecurityFilter implements Filter {
 
     @Override
     public void destroy() {
-        rules.clear();
-        source = null;
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOGGER.warn(String.format("unable to unregister %s: %s", objectName, e.getMessage()));
+            }
+            objectName = null;
+        }
+        rules.set(SecurityRules.empty());
+        content = null;
+        unreadable = false;
     }
 
 }
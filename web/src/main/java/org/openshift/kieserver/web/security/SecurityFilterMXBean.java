@@ -0,0 +1,41 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.security;
+
+/**
+ * The JMX view of a {@link SecurityFilter}.
+ */
+public interface SecurityFilterMXBean {
+
+    /**
+     * Where the rules are read from.
+     */
+    String getSource();
+
+    int getRuleCount();
+
+    /**
+     * Times changed rules were swapped in.
+     */
+    long getReloadCount();
+
+    /**
+     * Times the rules could not be read or compiled. A source that stays unreadable, or content that stays
+     * broken, counts once.
+     */
+    long getReloadFailureCount();
+
+}
@@ -0,0 +1,192 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.openshift.kieserver.common.cache.BoundedCache;
+
+/**
+ * An immutable, compiled set of security rules. Rules are ordered by their property name, and are
+ * indexed by HTTP method. The patterns of a method's rules are also joined into one alternation, so
+ * a path that none of them matches is let through after a single regex run; if any of the patterns
+ * uses back references (whose group numbers the alternation would shift), quoting or comments,
+ * every rule is run instead.
+ * Which rules match a method and path does not depend on the user, so that is cached per method and
+ * path, and repeated requests skip the regexes entirely.
+ */
+final class SecurityRules {
+
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
+    static final Comparator<SecurityRule> NAME_ORDER = new Comparator<SecurityRule>() {
+        @Override
+        public int compare(SecurityRule o1, SecurityRule o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    private static final SecurityRule[] NONE = new SecurityRule[0];
+    // back references, quoting and comments do not survive being joined
+    private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\([1-9]|k<|Q)|\\(\\?[a-zA-Z-]*x");
+
+    private final String source;
+    private final List<SecurityRule> rules;
+    private final Map<String,MethodRules> methodRules;
+    private final int cacheSize;
+    private final BoundedCache<String,SecurityRule[]> cache;
+
+    SecurityRules(String source, List<SecurityRule> rules, int cacheSize) {
+        this.source = source;
+        List<SecurityRule> sorted = new ArrayList<SecurityRule>(rules);
+        Collections.sort(sorted, NAME_ORDER);
+        this.rules = Collections.unmodifiableList(sorted);
+        Map<String,List<SecurityRule>> byMethod = new HashMap<String,List<SecurityRule>>();
+        for (SecurityRule rule : sorted) {
+            for (String method : rule.getMethods()) {
+                List<SecurityRule> list = byMethod.get(method);
+                if (list == null) {
+                    list = new ArrayList<SecurityRule>();
+                    byMethod.put(method, list);
+                }
+                list.add(rule);
+            }
+        }
+        Map<String,MethodRules> methodRules = new HashMap<String,MethodRules>();
+        for (Map.Entry<String,List<SecurityRule>> entry : byMethod.entrySet()) {
+            methodRules.put(entry.getKey(), new MethodRules(entry.getValue()));
+        }
+        this.methodRules = methodRules;
+        this.cacheSize = Math.max(cacheSize, 0);
+        this.cache = new BoundedCache<String,SecurityRule[]>(this.cacheSize);
+    }
+
+    static SecurityRules fromProperties(String source, Properties properties, int cacheSize) {
+        List<SecurityRule> rules = new ArrayList<SecurityRule>();
+        for (String name : properties.stringPropertyNames()) {
+            String config = properties.getProperty(name);
+            if (config != null) {
+                rules.add(new SecurityRule(name, config));
+            }
+        }
+        return new SecurityRules(source, rules, cacheSize);
+    }
+
+    static SecurityRules empty() {
+        return new SecurityRules(null, Collections.<SecurityRule>emptyList(), 0);
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    List<SecurityRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * The rules whose method and pattern match, in rule order.
+     */
+    SecurityRule[] getMatchingRules(String method, String path) {
+        MethodRules mr = method != null ? methodRules.get(method) : null;
+        if (mr == null) {
+            return NONE;
+        }
+        if (path == null) {
+            path = "";
+        }
+        if (cacheSize == 0) {
+            return mr.match(path);
+        }
+        String key = method + ' ' + path;
+        SecurityRule[] matching = cache.get(key);
+        if (matching == null) {
+            matching = cache.putIfAbsent(key, mr.match(path));
+        }
+        return matching;
+    }
+
+    // package-protected for JUnit testing
+    int getCachedCount() {
+        return cache.size();
+    }
+
+    // package-protected for JUnit testing
+    boolean isPrefiltered(String method) {
+        MethodRules mr = methodRules.get(method);
+        return mr != null && mr.combined != null;
+    }
+
+    private static final class MethodRules {
+
+        private final SecurityRule[] rules;
+        private final Pattern combined;
+
+        private MethodRules(List<SecurityRule> rules) {
+            this.rules = rules.toArray(new SecurityRule[rules.size()]);
+            this.combined = combine(this.rules);
+        }
+
+        private SecurityRule[] match(String path) {
+            if (combined != null && !combined.matcher(path).matches()) {
+                return NONE;
+            }
+            List<SecurityRule> matching = null;
+            for (SecurityRule rule : rules) {
+                if (rule.getPattern().matcher(path).matches()) {
+                    if (matching == null) {
+                        matching = new ArrayList<SecurityRule>(2);
+                    }
+                    matching.add(rule);
+                }
+            }
+            return matching != null ? matching.toArray(new SecurityRule[matching.size()]) : NONE;
+        }
+
+        private static Pattern combine(SecurityRule[] rules) {
+            if (rules.length < 2) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (SecurityRule rule : rules) {
+                String regex = rule.getPattern().pattern();
+                if (NOT_COMBINABLE.matcher(regex).find() || rule.getPattern().flags() != 0) {
+                    return null;
+                }
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append("(?:").append(regex).append(')');
+            }
+            try {
+                return Pattern.compile(sb.toString());
+            } catch (PatternSyntaxException pse) {
+                // e.g. the same named group in two patterns
+                return null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.kie.server.api.model.KieContainerStatus;
+import org.kie.server.api.model.ReleaseId;
+import org.kie.server.services.impl.KieContainerInstanceImpl;
+import org.openshift.kieserver.common.id.ConversationId;
+
+public class ConversationIdCacheTest {
+
+    @Test
+    public void testGetConversationId() {
+        ConversationIdCache cache = new ConversationIdCache();
+        KieContainerInstanceImpl container = new KieContainerInstanceImpl("MyId_1", KieContainerStatus.STARTED);
+        container.getResource().setReleaseId(new ReleaseId("org.openshift", "test", "1.3"));
+        String conversationId = cache.getConversationId("myServerId", "MyId_1", container);
+        if (!ConversationId.isSupported()) {
+            assertNull(conversationId);
+            return;
+        }
+        assertEquals("MyId_1", ConversationId.getContainerId(conversationId));
+        assertSame(conversationId, cache.getConversationId("myServerId", "MyId_1", container));
+        // updated to another version
+        container.getResource().setResolvedReleaseId(new ReleaseId("org.openshift", "test", "1.4"));
+        String updated = cache.getConversationId("myServerId", "MyId_1", container);
+        assertNotEquals(conversationId, updated);
+        assertSame(updated, cache.getConversationId("myServerId", "MyId_1", container));
+        // disposed and created again
+        KieContainerInstanceImpl recreated = new KieContainerInstanceImpl("MyId_1", KieContainerStatus.STARTED);
+        recreated.getResource().setResolvedReleaseId(new ReleaseId("org.openshift", "test", "1.4"));
+        assertNotSame(updated, cache.getConversationId("myServerId", "MyId_1", recreated));
+        assertEquals(1, cache.size());
+    }
+
+}
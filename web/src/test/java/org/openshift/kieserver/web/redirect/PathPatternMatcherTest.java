@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class PathPatternMatcherTest {
+
+    private static final String[] PATHS = new String[] {
+        "/server/containers/{id}",
+        "/server/containers/{id}/processes/{pId}/instances",
+        "/server/containers/{id}/processes/{processId}",
+        "/server/containers/{id}/processes/instances",
+        "/server/containers/{id}/processes/instances/{pInstanceId}",
+        "/server/containers/{id}/processes/instances/{pInstanceId}/variables",
+        "/server/containers/{id}/processes/instances/correlation/{correlationKey}",
+        "/server/containers/{id}/tasks/{tInstanceId}/states/started",
+        "/server/containers/{id}/tasks/{tInstanceId}/states/{state}",
+        "/server/containers/{id}/workitems/{workItemId}",
+        "/server/jobs/{jobId}",
+        "/server/jobs/{jobId}/",
+        "/server/queries/containers/{id}/process/instances",
+        "/server/documents/{id}.json",
+        "/server/containers"
+    };
+
+    private static final String[] REQUESTS = new String[] {
+        "/server/containers/MyId",
+        "server/containers/MyId",
+        "/server/containers/MyId/",
+        "/server/containers/MyId/processes/instances",
+        "/server/containers/MyId/processes/MyProcess/instances",
+        "/server/containers/MyId/processes/instances/42",
+        "/server/containers/MyId/processes/instances/fortytwo",
+        "/server/containers/MyId/processes/instances/42/variables",
+        "/server/containers/MyId/processes/instances/correlation/MyKey",
+        "/server/containers/MyId/tasks/7/states/started",
+        "/server/containers/MyId/tasks/7/states/completed",
+        "/server/containers/MyId/tasks/seven/states/started",
+        "/server/containers/MyId/workitems/3",
+        "/server/jobs/9",
+        "/server/jobs/9/",
+        "/server/jobs/",
+        "/server/queries/containers/MyId/process/instances",
+        "/server/documents/MyDoc.json",
+        "/server/containers",
+        "/server//processes/instances",
+        "/",
+        ""
+    };
+
+    private static List<PathPattern> newPathPatterns() {
+        Set<String> paths = new TreeSet<String>(PathPattern.PATH_ORDER);
+        for (String path : PATHS) {
+            paths.add(path);
+        }
+        List<PathPattern> pathPatterns = new ArrayList<PathPattern>();
+        for (String path : paths) {
+            pathPatterns.add(new PathPattern(path));
+        }
+        return pathPatterns;
+    }
+
+    private static PathPattern scan(List<PathPattern> pathPatterns, String pathInfo) {
+        for (PathPattern pathPattern : pathPatterns) {
+            if (pathPattern.matches(pathInfo)) {
+                return pathPattern;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSameAsLinearScan() {
+        List<PathPattern> pathPatterns = newPathPatterns();
+        PathPatternMatcher matcher = new PathPatternMatcher(pathPatterns);
+        for (String request : REQUESTS) {
+            assertSame(request, scan(pathPatterns, request), matcher.getPathPattern(request));
+        }
+    }
+
+    @Test
+    public void testPriority() {
+        PathPatternMatcher matcher = new PathPatternMatcher(newPathPatterns());
+        // the longer {processId} path sorts (and so matches) before the literal instances path
+        assertEquals("/server/containers/{id}/processes/{processId}", matcher.getPathPattern("/server/containers/MyId/processes/instances").getPath());
+        assertEquals("/server/containers/{id}/tasks/{tInstanceId}/states/started", matcher.getPathPattern("/server/containers/MyId/tasks/7/states/started").getPath());
+    }
+
+    @Test
+    public void testNoMatch() {
+        PathPatternMatcher matcher = new PathPatternMatcher(newPathPatterns());
+        assertNull(matcher.getPathPattern(null));
+        // patterns without variables never match
+        assertNull(matcher.getPathPattern("/server/containers"));
+        assertNull(matcher.getPathPattern("/server/containers/MyId/processes/instances/fortytwo"));
+    }
+
+}
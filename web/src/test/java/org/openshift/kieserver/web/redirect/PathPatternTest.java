@@ -20,8 +20,16 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.openshift.kieserver.web.redirect.PathPattern.ID;
 import static org.openshift.kieserver.web.redirect.PathPattern.P_INSTANCE_ID;
+import static org.openshift.kieserver.web.redirect.RedirectStrategy.CONTAINER_CONFIG;
+import static org.openshift.kieserver.web.redirect.RedirectStrategy.CONVERSATION;
+import static org.openshift.kieserver.web.redirect.RedirectStrategy.DEFAULT_ALIAS;
+import static org.openshift.kieserver.web.redirect.RedirectStrategy.PROCESS_INSTANCE;
+import static org.openshift.kieserver.web.redirect.RedirectStrategy.TASK_INSTANCE;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 
 import org.junit.Test;
@@ -46,6 +54,17 @@ public class PathPatternTest {
         assertFalse(pp.matches("/foo/MyId/bar/forty42two/pizza"));
     }
 
+    @Test
+    public void testExtractVariables() {
+        PathPattern pp = new PathPattern("foo/{id}/bar/{pInstanceId}/pizza");
+        Map<String,String> vars = pp.extractVariables("/foo/MyId/bar/42/pizza");
+        assertEquals(2, vars.size());
+        assertEquals("MyId", vars.get(ID));
+        assertEquals("42", vars.get(P_INSTANCE_ID));
+        vars = pp.extractVariables("/foo/MyId;v=1/bar/42/pizza");
+        assertEquals("MyId", vars.get(ID));
+    }
+
     @Test
     public void testBuildPath() {
         PathPattern pp = new PathPattern("foo/{id}/bar/{pInstanceId}/pizza");
@@ -56,4 +75,15 @@ public class PathPatternTest {
         assertEquals("/foo/MyId/bar/42/pizza", path);
     }
 
+    @Test
+    public void testRedirectStrategies() {
+        PathPattern pp = new PathPattern("foo/{id}/tasks/{tInstanceId}", Collections.<String>emptySet());
+        assertEquals(Arrays.asList(CONTAINER_CONFIG, TASK_INSTANCE, CONVERSATION, DEFAULT_ALIAS), pp.getRedirectStrategies());
+        pp = new PathPattern("foo/{id}/instances", new HashSet<String>(Arrays.asList("instanceId")));
+        assertEquals(Arrays.asList(CONTAINER_CONFIG, PROCESS_INSTANCE, CONVERSATION, DEFAULT_ALIAS), pp.getRedirectStrategies());
+        // unknown query parameters keep the instanceId lookup
+        pp = new PathPattern("foo/{id}/instances");
+        assertEquals(Arrays.asList(CONTAINER_CONFIG, PROCESS_INSTANCE, CONVERSATION, DEFAULT_ALIAS), pp.getRedirectStrategies());
+    }
+
 }
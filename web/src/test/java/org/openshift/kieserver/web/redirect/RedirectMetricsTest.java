@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RedirectMetricsTest {
+
+    @Test
+    public void testBucket() {
+        assertEquals(0, RedirectMetrics.bucket(0));
+        assertEquals(0, RedirectMetrics.bucket(1));
+        assertEquals(1, RedirectMetrics.bucket(2));
+        assertEquals(2, RedirectMetrics.bucket(3));
+        assertEquals(10, RedirectMetrics.bucket(1024));
+        assertEquals(11, RedirectMetrics.bucket(1025));
+        assertEquals(RedirectMetrics.BUCKETS - 1, RedirectMetrics.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRecord() {
+        RedirectMetrics metrics = new RedirectMetrics();
+        metrics.record(RedirectStrategy.DEFAULT_ALIAS, 1000);
+        metrics.record(RedirectStrategy.DEFAULT_ALIAS, 3000);
+        metrics.record(RedirectStrategy.PROCESS_INSTANCE, 1000);
+        metrics.record(null, 500);
+        assertEquals(4, metrics.getRequests());
+        assertEquals(1, metrics.getUnredirected());
+        Map<String,Long> redirects = metrics.getRedirectsByStrategy();
+        assertEquals(Long.valueOf(2), redirects.get("default"));
+        assertEquals(Long.valueOf(1), redirects.get("pInstanceId"));
+        assertEquals(Long.valueOf(0), redirects.get("jobId"));
+        assertEquals(1.375, metrics.getMeanFilterMicros(), 0.0001);
+        Map<String,Long> histogram = metrics.getFilterNanosHistogram();
+        assertEquals(3, histogram.size());
+        assertEquals(Long.valueOf(1), histogram.get("512"));
+        assertEquals(Long.valueOf(2), histogram.get("1024"));
+        assertEquals(Long.valueOf(1), histogram.get("4096"));
+    }
+
+    @Test
+    public void testScrape() {
+        RedirectMetrics metrics = new RedirectMetrics();
+        metrics.record(RedirectStrategy.CONVERSATION, 1000);
+        metrics.record(null, 3000);
+        String scrape = metrics.scrape();
+        assertTrue(scrape, scrape.contains("kie_redirect_requests_total{strategy=\"conversation\"} 1\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_requests_total{strategy=\"none\"} 1\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_filter_seconds_bucket{le=\"1.024E-6\"} 1\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_filter_seconds_bucket{le=\"4.096E-6\"} 2\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_filter_seconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_filter_seconds_count 2\n"));
+        assertTrue(scrape, scrape.contains("kie_redirect_deployment_lookups_total "));
+    }
+
+}
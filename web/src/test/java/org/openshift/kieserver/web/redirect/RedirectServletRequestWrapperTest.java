@@ -0,0 +1,97 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.redirect;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+public class RedirectServletRequestWrapperTest {
+
+    @Test
+    public void testParameters() {
+        Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+        parameters.put("containerId", new String[]{"MyId"});
+        parameters.put("page", new String[]{"1"});
+        Map<String, String[]> overrides = new HashMap<String, String[]>();
+        overrides.put("containerId", new String[]{"MyId_1"});
+        overrides.put("extra", new String[]{"x"});
+        RedirectServletRequestWrapper wrapper = new RedirectServletRequestWrapper(newRequest(parameters, "containerId=MyId&page=1"), null, overrides);
+        assertEquals("MyId_1", wrapper.getParameter("containerId"));
+        assertArrayEquals(new String[]{"1"}, wrapper.getParameterValues("page"));
+        assertEquals("x", wrapper.getParameter("extra"));
+        assertNull(wrapper.getParameter("missing"));
+        Map<String, String[]> parameterMap = wrapper.getParameterMap();
+        assertSame(parameterMap, wrapper.getParameterMap());
+        assertEquals(3, parameterMap.size());
+        assertEquals(new HashSet<String>(Arrays.asList("containerId", "page", "extra")), parameterMap.keySet());
+        assertArrayEquals(new String[]{"MyId_1"}, parameterMap.get("containerId"));
+        Set<String> names = new HashSet<String>(Collections.list(wrapper.getParameterNames()));
+        assertEquals(parameterMap.keySet(), names);
+        // the request's own map when there is nothing to override
+        wrapper = new RedirectServletRequestWrapper(newRequest(parameters, null), null);
+        assertSame(parameters, wrapper.getParameterMap());
+        assertNull(wrapper.getQueryString());
+    }
+
+    @Test
+    public void testQueryString() {
+        Map<String, String[]> overrides = Collections.singletonMap("containerId", new String[]{"MyId_1"});
+        RedirectServletRequestWrapper wrapper = new RedirectServletRequestWrapper(newRequest(Collections.<String, String[]>emptyMap(), null), null, overrides);
+        assertEquals("containerId=MyId_1", wrapper.rewriteQueryString("containerId=MyId"));
+        assertEquals("page=1&containerId=MyId_1;containerId=MyId_1&mycontainerId=MyId&containerId",
+                wrapper.rewriteQueryString("?page=1&containerId=MyId;containerId=&mycontainerId=MyId&containerId"));
+        assertEquals("page=1", wrapper.rewriteQueryString("page=1"));
+        assertEquals("", wrapper.rewriteQueryString(""));
+        assertNull(wrapper.rewriteQueryString(null));
+    }
+
+    private static HttpServletRequest newRequest(final Map<String, String[]> parameters, final String queryString) {
+        return (HttpServletRequest)Proxy.newProxyInstance(RedirectServletRequestWrapperTest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if ("getParameterMap".equals(name)) {
+                    return parameters;
+                } else if ("getParameterValues".equals(name)) {
+                    return parameters.get(args[0]);
+                } else if ("getParameterNames".equals(name)) {
+                    return Collections.enumeration(parameters.keySet());
+                } else if ("getQueryString".equals(name)) {
+                    return queryString;
+                }
+                return null;
+            }
+        });
+    }
+
+}
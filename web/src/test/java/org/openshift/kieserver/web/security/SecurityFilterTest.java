@@ -15,12 +15,20 @@
  */
 package org.openshift.kieserver.web.security;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
 import java.util.Properties;
 
+import javax.servlet.ServletContext;
+
 import org.junit.Test;
 import org.openshift.kieserver.web.security.SecurityFilter;
 
@@ -66,4 +74,89 @@ public class SecurityFilterTest {
         assertFalse(filter.doFilter(data));
     }
 
+    @Test
+    public void testRuleOrder() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("b-containers", "/server/containers/[^/]+|PUT,DELETE|admin");
+        properties.setProperty("a-all", "/server/.*|DELETE|superuser");
+        SecurityFilter orderedFilter = new SecurityFilter();
+        orderedFilter.init(SecurityFilterTest.class.getSimpleName(), properties);
+        TestSecurityData data;
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "kie-server");
+        assertFalse(orderedFilter.doFilter(data));
+        assertEquals("forbidden by a-all rule", data.getError());
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "superuser");
+        assertFalse(orderedFilter.doFilter(data));
+        assertEquals("forbidden by b-containers rule", data.getError());
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "superuser", "admin");
+        assertTrue(orderedFilter.doFilter(data));
+        orderedFilter.destroy();
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "kie-server");
+        assertTrue(orderedFilter.doFilter(data));
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        String source = SecurityFilterTest.class.getSimpleName();
+        SecurityFilter reloadingFilter = new SecurityFilter();
+        TestSecurityData data;
+        assertTrue(reloadingFilter.reload(source, "containers=/server/containers/[^/]+|DELETE|admin".getBytes(utf8)));
+        assertEquals(1, reloadingFilter.getReloadCount());
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "kie-server");
+        assertFalse(reloadingFilter.doFilter(data));
+        // unchanged content
+        assertFalse(reloadingFilter.reload(source, "containers=/server/containers/[^/]+|DELETE|admin".getBytes(utf8)));
+        assertEquals(1, reloadingFilter.getReloadCount());
+        // broken content keeps the current rules, and is only reported once
+        assertFalse(reloadingFilter.reload(source, "containers=/server/containers/(|DELETE|admin".getBytes(utf8)));
+        assertFalse(reloadingFilter.reload(source, "containers=/server/containers/(|DELETE|admin".getBytes(utf8)));
+        assertEquals(1, reloadingFilter.getReloadFailureCount());
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "kie-server");
+        assertFalse(reloadingFilter.doFilter(data));
+        assertTrue(reloadingFilter.reload(source, "# no rules".getBytes(utf8)));
+        assertEquals(2, reloadingFilter.getReloadCount());
+        data = new TestSecurityData("/server/containers/MyContainer", "DELETE", "kie-server");
+        assertTrue(reloadingFilter.doFilter(data));
+    }
+
+    @Test
+    public void testUnreadableSource() {
+        final String[] content = { "containers=/server/containers/[^/]+|DELETE|admin" };
+        ServletContext servletContext = (ServletContext)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ServletContext.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getResourceAsStream".equals(method.getName()) && content[0] != null) {
+                    return new ByteArrayInputStream(content[0].getBytes(Charset.forName("UTF-8")));
+                }
+                return null;
+            }
+        });
+        String source = SecurityFilterTest.class.getSimpleName();
+        SecurityFilter reloadingFilter = new SecurityFilter();
+        reloadingFilter.poll(servletContext, source);
+        assertEquals(1, reloadingFilter.getReloadCount());
+        assertEquals(1, reloadingFilter.getRuleCount());
+        // a missing source is only counted once
+        content[0] = null;
+        reloadingFilter.poll(servletContext, source);
+        reloadingFilter.poll(servletContext, source);
+        assertEquals(1, reloadingFilter.getReloadFailureCount());
+        assertEquals(1, reloadingFilter.getRuleCount());
+        content[0] = "# no rules";
+        reloadingFilter.poll(servletContext, source);
+        assertEquals(2, reloadingFilter.getReloadCount());
+        assertEquals(0, reloadingFilter.getRuleCount());
+        content[0] = null;
+        reloadingFilter.poll(servletContext, source);
+        assertEquals(2, reloadingFilter.getReloadFailureCount());
+    }
+
+    @Test
+    public void testReloadInterval() {
+        assertEquals(0, SecurityFilter.toReloadInterval(null));
+        assertEquals(30, SecurityFilter.toReloadInterval(" 30 "));
+        assertEquals(0, SecurityFilter.toReloadInterval("30s"));
+    }
+
 }
@@ -0,0 +1,64 @@
+/**
+ *  Copyright 2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package org.openshift.kieserver.web.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class SecurityRulesTest {
+
+    @Test
+    public void testMatchingRules() {
+        Properties properties = new Properties();
+        properties.setProperty("2", "/a/.*|GET|r2");
+        properties.setProperty("1", "/a/b|get,post|r1");
+        properties.setProperty("3", "/(x)/\\1|GET|r3");
+        SecurityRules rules = SecurityRules.fromProperties("test", properties, 2);
+        assertEquals("1", rules.getRules().get(0).getName());
+        assertEquals("3", rules.getRules().get(2).getName());
+        // back references are not joined
+        assertFalse(rules.isPrefiltered("GET"));
+        assertEquals(1, rules.getMatchingRules("POST", "/a/b").length);
+        assertEquals(2, rules.getMatchingRules("GET", "/a/b").length);
+        assertEquals("3", rules.getMatchingRules("GET", "/x/x")[0].getName());
+        assertEquals(0, rules.getMatchingRules("GET", "/x/y").length);
+        assertEquals(0, rules.getMatchingRules("DELETE", "/a/b").length);
+        SecurityRule[] matching = rules.getMatchingRules("GET", "/a/c");
+        assertSame(matching, rules.getMatchingRules("GET", "/a/c"));
+        assertTrue(rules.getCachedCount() <= 2);
+    }
+
+    @Test
+    public void testPrefilter() {
+        Properties properties = new Properties();
+        properties.setProperty("2", "/a/.*|GET|r2");
+        properties.setProperty("1", "/a/b|GET|r1");
+        SecurityRules rules = SecurityRules.fromProperties("test", properties, 0);
+        assertTrue(rules.isPrefiltered("GET"));
+        assertEquals(0, rules.getMatchingRules("GET", "/b").length);
+        assertEquals(2, rules.getMatchingRules("GET", "/a/b").length);
+        assertEquals(0, rules.getCachedCount());
+        properties.setProperty("3", "\\Q/a.b\\E|GET|r3");
+        assertFalse(SecurityRules.fromProperties("test", properties, 0).isPrefiltered("GET"));
+    }
+
+}
@@ -29,6 +29,7 @@ public class TestSecurityData implements SecurityData {
     private final String path;
     private final String method;
     private final Set<String> roles = new HashSet<String>();
+    private String error = null;
 
     public TestSecurityData(String path, String method, String... roles) {
         this.path = path;
@@ -61,6 +62,11 @@ public class TestSecurityData implements SecurityData {
     @Override
     public void sendError(int sc, String msg) throws IOException {
         LOGGER.error("[" + sc + "] " + msg);
+        error = msg;
+    }
+
+    public String getError() {
+        return error;
     }
 
 }